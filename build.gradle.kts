@@ -1,5 +1,6 @@
 plugins {
     id("org.openrewrite.build.recipe-library") version "latest.release"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "io.moderne"
@@ -7,9 +8,11 @@ description = "JSON-RPC 2.0 client and server library"
 
 dependencies {
     // https://msgpack.org/
-    // depends on Jackson 2.18 right now, so we'll introduce when we
-    // rev Jackson elsewhere
-//    implementation("org.msgpack:jackson-dataformat-msgpack:latest.release")
+    // optional, for MessagePackMessageFormatter
+    compileOnly("org.msgpack:jackson-dataformat-msgpack:latest.release")
+    // optional, for SmileMessageFormatter and CborMessageFormatter
+    compileOnly("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
+    compileOnly("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
 
     api("org.jspecify:jspecify:latest.release")
 
@@ -17,6 +20,13 @@ dependencies {
     compileOnly("io.micrometer:micrometer-core:latest.release")
     implementation("com.fasterxml.jackson.module:jackson-module-parameter-names:2.21.1")
     testImplementation("org.openrewrite:rewrite-test:latest.release")
+    testImplementation("org.msgpack:jackson-dataformat-msgpack:latest.release")
+    testImplementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
+    testImplementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
+
+    jmh("org.msgpack:jackson-dataformat-msgpack:latest.release")
+    jmh("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
+    jmh("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
 }
 
 nexusPublishing {
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.formatter;
+
+import io.moderne.jsonrpc.JsonRpcMessage;
+import io.moderne.jsonrpc.JsonRpcRequest;
+import io.moderne.jsonrpc.RawJson;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the wire formats on a request carrying a tree of the shape our
+ * peers exchange: nested nodes with repetitive field names, ids, and numeric
+ * positions. Encoded sizes are printed at setup.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class FormatterBenchmark {
+
+    @Param({"json", "msgpack", "smile", "cbor"})
+    String format;
+
+    @Param({"3", "6"})
+    int depth;
+
+    MessageFormatter formatter;
+    JsonRpcMessage request;
+    byte[] frame;
+
+    @Setup
+    public void setup() throws IOException {
+        switch (format) {
+            case "msgpack":
+                formatter = new MessagePackMessageFormatter();
+                break;
+            case "smile":
+                formatter = new SmileMessageFormatter();
+                break;
+            case "cbor":
+                formatter = new CborMessageFormatter();
+                break;
+            default:
+                formatter = new JsonMessageFormatter();
+        }
+        request = JsonRpcRequest.newRequest("visit", RawJson.of(new Node("root", 0, depth)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        formatter.serialize(request, out);
+        frame = out.toByteArray();
+        System.out.println(format + " frame at depth " + depth + ": " + frame.length + " bytes");
+    }
+
+    @Benchmark
+    public void serialize(Blackhole bh) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(frame.length);
+        formatter.serialize(request, out);
+        bh.consume(out);
+    }
+
+    @Benchmark
+    public Node deserializeAndConvert() throws IOException {
+        JsonRpcRequest parsed = (JsonRpcRequest) formatter.deserialize(new ByteArrayInputStream(frame));
+        return formatter.convertValue(parsed.getParams(), Node.class);
+    }
+
+    @Benchmark
+    public JsonRpcMessage deserialize() throws IOException {
+        return formatter.deserialize(new ByteArrayInputStream(frame));
+    }
+
+    @SuppressWarnings("unused")
+    public static class Node {
+        String id;
+        String kind;
+        int line;
+        int column;
+        double weight;
+        Map<String, String> markers;
+        List<Node> children;
+
+        public Node() {
+        }
+
+        Node(String id, int level, int depth) {
+            this.id = id;
+            this.kind = level % 2 == 0 ? "MethodDeclaration" : "MethodInvocation";
+            this.line = level * 17 + id.length();
+            this.column = level * 4;
+            this.weight = level / 3.0;
+            this.markers = new LinkedHashMap<>();
+            markers.put("source", "Main.java");
+            markers.put("style", "default");
+            this.children = new ArrayList<>();
+            if (level < depth) {
+                for (int i = 0; i < 4; i++) {
+                    children.add(new Node(id + "." + i, level + 1, depth));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how many inbound requests for one method run at once, and how many
+ * wait their turn, as configured by {@link MethodOptions}. Waiting requests
+ * are started in the order they arrived.
+ * <p>
+ * The getters report how deep the queue runs and how long requests waited in
+ * it, which shows whether the limit is starving the method.
+ */
+public class Bulkhead {
+    private final String method;
+    private final int maxConcurrency;
+    private final int queueSize;
+    private final Executor executor;
+
+    private final Semaphore permits;
+    private final Queue<Queued> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedRequests = new AtomicInteger();
+
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong waitedRequests = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    Bulkhead(String method, MethodOptions options, Executor executor) {
+        this.method = method;
+        this.maxConcurrency = options.getMaxConcurrency();
+        this.queueSize = options.getQueueSize();
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    /**
+     * Run {@code dispatch} on the executor once a slot is free. The slot is
+     * held until the stage it returns completes, so a handler answering
+     * asynchronously still counts against the limit while it is pending.
+     *
+     * @return {@code false} when the queue is full and the request was turned away.
+     */
+    boolean submit(Supplier<? extends CompletionStage<?>> dispatch) {
+        // Jumping ahead of already queued requests would break arrival order.
+        if (queue.isEmpty() && permits.tryAcquire()) {
+            try {
+                run(dispatch);
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+            return true;
+        }
+        if (queuedRequests.incrementAndGet() > queueSize) {
+            queuedRequests.decrementAndGet();
+            rejectedRequests.incrementAndGet();
+            return false;
+        }
+        queue.offer(new Queued(dispatch));
+        drain();
+        return true;
+    }
+
+    private void run(Supplier<? extends CompletionStage<?>> dispatch) {
+        executor.execute(() -> {
+            CompletionStage<?> done;
+            try {
+                done = dispatch.get();
+            } catch (RuntimeException | Error e) {
+                release();
+                throw e;
+            }
+            done.whenComplete((nothing, t) -> release());
+        });
+    }
+
+    private void release() {
+        permits.release();
+        if (!queue.isEmpty()) {
+            drain();
+        }
+    }
+
+    /**
+     * Hand slots to queued requests in order. Called after every enqueue and
+     * every release, so a request queued just as the last slot was released
+     * can't be stranded.
+     */
+    private void drain() {
+        synchronized (queue) {
+            Queued head;
+            while ((head = queue.peek()) != null && permits.tryAcquire()) {
+                queue.poll();
+                queuedRequests.decrementAndGet();
+                waitNanos.addAndGet(System.nanoTime() - head.queuedAt);
+                waitedRequests.incrementAndGet();
+                try {
+                    run(head.dispatch);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down; nothing queued will run any more.
+                    permits.release();
+                }
+            }
+        }
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @return requests running now.
+     */
+    public int getRunningRequests() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * @return requests waiting for a slot.
+     */
+    public int getQueuedRequests() {
+        return queuedRequests.get();
+    }
+
+    /**
+     * @return requests turned away because the queue was full.
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.get();
+    }
+
+    /**
+     * @return requests that found every slot taken and queued for one.
+     */
+    public long getWaitedRequests() {
+        return waitedRequests.get();
+    }
+
+    /**
+     * @return the time all of {@link #getWaitedRequests()} spent queued.
+     */
+    public Duration getTotalWaitTime() {
+        return Duration.ofNanos(waitNanos.get());
+    }
+
+    private static final class Queued {
+        final Supplier<? extends CompletionStage<?>> dispatch;
+        final long queuedAt = System.nanoTime();
+
+        Queued(Supplier<? extends CompletionStage<?>> dispatch) {
+            this.dispatch = dispatch;
+        }
+    }
+}
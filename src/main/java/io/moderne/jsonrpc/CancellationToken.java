@@ -0,0 +1,116 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+/**
+ * Signals that the peer sent a {@code $/cancelRequest} for the request a
+ * {@link JsonRpcMethod} is handling. Long-running handlers should poll it and
+ * stop early; the peer is no longer waiting for the result.
+ */
+public final class CancellationToken {
+    /**
+     * Handed to code that isn't running on behalf of a cancellable request.
+     */
+    static final CancellationToken NONE = new CancellationToken();
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private volatile boolean cancellationRequested;
+
+    /**
+     * The thread to interrupt on cancellation, while it is running a handler
+     * that opted into interruption. Guarded by {@code this}.
+     */
+    private @Nullable Thread interruptible;
+
+    /**
+     * What an asynchronous handler returned, cancelled along with the request.
+     * Guarded by {@code this}.
+     */
+    private @Nullable Future<?> pending;
+
+    CancellationToken() {
+    }
+
+    public boolean isCancellationRequested() {
+        return cancellationRequested;
+    }
+
+    public void throwIfCancellationRequested() {
+        if (cancellationRequested) {
+            throw new CancellationException("Request cancelled by the peer");
+        }
+    }
+
+    /**
+     * @return the token of the request being handled on this thread, for
+     * handlers such as {@link Rpc} methods that have no other way to reach it.
+     * Outside a handler, a token that is never cancelled.
+     */
+    public static CancellationToken current() {
+        CancellationToken token = CURRENT.get();
+        return token == null ? NONE : token;
+    }
+
+    synchronized void cancel() {
+        cancellationRequested = true;
+        if (interruptible != null) {
+            interruptible.interrupt();
+        }
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    /**
+     * Cancel {@code future} when the request is, which may be right away.
+     */
+    synchronized void cancelWith(Future<?> future) {
+        if (cancellationRequested) {
+            future.cancel(false);
+        } else {
+            pending = future;
+        }
+    }
+
+    void enter(boolean interruptOnCancel) {
+        CURRENT.set(this);
+        if (interruptOnCancel) {
+            synchronized (this) {
+                interruptible = Thread.currentThread();
+            }
+        }
+    }
+
+    void exit() {
+        CURRENT.remove();
+        synchronized (this) {
+            if (interruptible != null) {
+                interruptible = null;
+                if (cancellationRequested) {
+                    // A cancel that lands just as the handler returns must not
+                    // leak its interrupt into the next task on this thread.
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+}
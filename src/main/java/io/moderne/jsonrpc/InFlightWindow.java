@@ -0,0 +1,298 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of requests a {@link JsonRpc} has outstanding with its peer,
+ * so a producer that outpaces the peer is held back instead of piling up
+ * buffered output and open requests. A request holds its slot from the moment
+ * it is sent until its future completes, however that happens (response,
+ * error, timeout, or cancellation).
+ * <p>
+ * The getters report how full the window runs and how long senders waited for
+ * it, which is a direct measure of how far the peer is lagging.
+ */
+public class InFlightWindow {
+
+    /**
+     * What {@link JsonRpc#send(JsonRpcRequest)} does when every slot is taken.
+     */
+    public enum Overflow {
+        /**
+         * Block the sending thread until a slot frees up.
+         */
+        BLOCK,
+
+        /**
+         * Return a future right away and send the request once a slot frees
+         * up, in the order requests were queued.
+         */
+        QUEUE,
+
+        /**
+         * Return a future failed with a {@link RejectedExecutionException}.
+         */
+        FAIL
+    }
+
+    private final int maxInFlight;
+    private final Overflow overflow;
+    private final Executor sendExecutor;
+
+    private final Semaphore permits;
+    private final Queue<Queued> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedRequests = new AtomicInteger();
+
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong waitedRequests = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    /**
+     * @param sendExecutor where queued requests are sent from once a slot
+     *                     frees up; never the thread completing a response,
+     *                     which is usually the reader loop.
+     */
+    InFlightWindow(int maxInFlight, Overflow overflow, Executor sendExecutor) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        this.maxInFlight = maxInFlight;
+        this.overflow = overflow;
+        this.sendExecutor = sendExecutor;
+        this.permits = new Semaphore(maxInFlight, true);
+    }
+
+    /**
+     * Send {@code requests} requests through {@code send} once they fit in the
+     * window. A batch larger than the whole window occupies all of it.
+     *
+     * @return a future per request, completed as the futures returned by
+     * {@code send} are.
+     */
+    List<CompletableFuture<JsonRpcSuccess>> submit(int requests,
+                                                   Supplier<List<CompletableFuture<JsonRpcSuccess>>> send) {
+        int needed = Math.min(requests, maxInFlight);
+        switch (overflow) {
+            case BLOCK:
+                if (!permits.tryAcquire(needed)) {
+                    long start = System.nanoTime();
+                    try {
+                        permits.acquire(needed);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return failed(requests, e);
+                    }
+                    recordWait(System.nanoTime() - start);
+                }
+                return sendHolding(needed, send);
+            case FAIL:
+                if (!permits.tryAcquire(needed)) {
+                    rejectedRequests.addAndGet(requests);
+                    return failed(requests, new RejectedExecutionException(
+                            "All " + maxInFlight + " in-flight request slots are taken"));
+                }
+                return sendHolding(needed, send);
+            case QUEUE:
+            default:
+                // Jumping ahead of already queued requests would starve them.
+                if (queue.isEmpty() && permits.tryAcquire(needed)) {
+                    return sendHolding(needed, send);
+                }
+                Queued queued = new Queued(needed, send, requests);
+                queue.offer(queued);
+                queuedRequests.addAndGet(requests);
+                drain();
+                return queued.futures;
+        }
+    }
+
+    private List<CompletableFuture<JsonRpcSuccess>> sendHolding(int held,
+                                                                Supplier<List<CompletableFuture<JsonRpcSuccess>>> send) {
+        List<CompletableFuture<JsonRpcSuccess>> sent;
+        try {
+            sent = send.get();
+        } catch (RuntimeException e) {
+            release(held);
+            throw e;
+        }
+        CompletableFuture.allOf(sent.toArray(new CompletableFuture[0]))
+                .whenComplete((nothing, t) -> release(held));
+        return sent;
+    }
+
+    private void release(int held) {
+        permits.release(held);
+        if (!queue.isEmpty()) {
+            drain();
+        }
+    }
+
+    /**
+     * Hand slots to queued requests in order. Called after every enqueue and
+     * every release, so a request queued just as the last slot was released
+     * can't be stranded.
+     */
+    private void drain() {
+        synchronized (queue) {
+            Queued head;
+            while ((head = queue.peek()) != null && permits.tryAcquire(head.needed)) {
+                queue.poll();
+                queuedRequests.addAndGet(-head.futures.size());
+                recordWait(System.nanoTime() - head.queuedAt);
+                Queued next = head;
+                try {
+                    sendExecutor.execute(() -> next.send(this));
+                } catch (RejectedExecutionException e) {
+                    next.fail(e);
+                    permits.release(next.needed);
+                }
+            }
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waitNanos.addAndGet(nanos);
+        waitedRequests.incrementAndGet();
+    }
+
+    private static List<CompletableFuture<JsonRpcSuccess>> failed(int requests, Throwable t) {
+        List<CompletableFuture<JsonRpcSuccess>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            CompletableFuture<JsonRpcSuccess> future = new CompletableFuture<>();
+            future.completeExceptionally(t);
+            futures.add(future);
+        }
+        return futures;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * @return slots held by requests awaiting their response.
+     */
+    public int getPermitsInUse() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    /**
+     * @return requests waiting for a slot under {@link Overflow#QUEUE}.
+     */
+    public int getQueuedRequests() {
+        return queuedRequests.get();
+    }
+
+    /**
+     * @return requests turned away under {@link Overflow#FAIL}.
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.get();
+    }
+
+    /**
+     * @return sends that found the window full and had to wait for a slot.
+     */
+    public long getWaitedSends() {
+        return waitedRequests.get();
+    }
+
+    /**
+     * @return the time all of {@link #getWaitedSends()} spent waiting for a
+     * slot, blocked or queued.
+     */
+    public Duration getTotalWaitTime() {
+        return Duration.ofNanos(waitNanos.get());
+    }
+
+    private static final class Queued {
+        final int needed;
+        final Supplier<List<CompletableFuture<JsonRpcSuccess>>> send;
+        final List<CompletableFuture<JsonRpcSuccess>> futures;
+        final long queuedAt = System.nanoTime();
+
+        Queued(int needed, Supplier<List<CompletableFuture<JsonRpcSuccess>>> send, int requests) {
+            this.needed = needed;
+            this.send = send;
+            List<CompletableFuture<JsonRpcSuccess>> futures = new ArrayList<>(requests);
+            for (int i = 0; i < requests; i++) {
+                futures.add(new CompletableFuture<>());
+            }
+            this.futures = Collections.unmodifiableList(futures);
+        }
+
+        void send(InFlightWindow window) {
+            boolean anyWanted = false;
+            for (CompletableFuture<JsonRpcSuccess> future : futures) {
+                anyWanted |= !future.isDone();
+            }
+            if (!anyWanted) {
+                // Every caller cancelled while queued; don't bother the peer.
+                window.release(needed);
+                return;
+            }
+
+            List<CompletableFuture<JsonRpcSuccess>> sent;
+            try {
+                sent = window.sendHolding(needed, send);
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                CompletableFuture<JsonRpcSuccess> caller = futures.get(i);
+                CompletableFuture<JsonRpcSuccess> request = sent.get(i);
+                request.whenComplete((success, t) -> {
+                    if (t != null) {
+                        caller.completeExceptionally(t);
+                    } else {
+                        caller.complete(success);
+                    }
+                });
+                // Cancelling the caller's future withdraws the sent request.
+                caller.whenComplete((success, t) -> {
+                    if (caller.isCancelled()) {
+                        request.cancel(true);
+                    }
+                });
+            }
+        }
+
+        void fail(Throwable t) {
+            for (CompletableFuture<JsonRpcSuccess> future : futures) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+}
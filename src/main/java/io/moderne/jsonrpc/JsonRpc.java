@@ -17,23 +17,131 @@ package io.moderne.jsonrpc;
 
 import io.moderne.jsonrpc.formatter.JsonMessageFormatter;
 import io.moderne.jsonrpc.formatter.MessageFormatter;
+import io.moderne.jsonrpc.formatter.ValueReader;
 import io.moderne.jsonrpc.handler.MessageHandler;
+import io.moderne.jsonrpc.internal.BufferPool;
+import io.moderne.jsonrpc.internal.HashedWheelTimer;
+import org.jspecify.annotations.Nullable;
 
 import java.io.EOFException;
-import java.util.Map;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 public class JsonRpc {
-    private final ForkJoinPool forkJoin = new ForkJoinPool(
-            4, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    /**
+     * The vscode-jsonrpc notification that cancels an earlier request by id.
+     */
+    private static final String CANCEL_REQUEST = "$/cancelRequest";
+
+    /**
+     * The notification carrying a partial result, as in the Language Server
+     * Protocol, for the request whose {@code params} named its token.
+     */
+    private static final String PROGRESS = "$/progress";
+    private static final String PARTIAL_RESULT_TOKEN = "partialResultToken";
+    private static final int MAX_PARTIAL_RESULT_BATCH = 256;
+
+    /**
+     * Flow control for partial results, which the Language Server Protocol
+     * has none of. The request's {@code params} name how many partial results
+     * may be sent ahead of the ones it acknowledged with this notification,
+     * whose {@code params} are the token and a {@code count} of partial
+     * results taken since the last one. A peer that names no window gets
+     * partial results as fast as they can be sent.
+     */
+    private static final String PARTIAL_RESULT_WINDOW = "partialResultWindow";
+    private static final String PARTIAL_RESULT_ACK = "$/partialResultAck";
+
+    /**
+     * How often a sender out of credit for partial results checks whether
+     * the request has been cancelled in the meantime.
+     */
+    private static final long PARTIAL_RESULT_CREDIT_POLL_MILLIS = 50;
 
-    private final Map<String, JsonRpcMethod<?>> methods = new ConcurrentHashMap<>();
+    /**
+     * Shared by {@link JsonRpcRequest#newRequest} and every instance left
+     * with its default generator, so requests built either way can't collide.
+     */
+    static final RequestIdGenerator DEFAULT_ID_GENERATOR = RequestIdGenerator.sequential();
+
+    /**
+     * Runs method handlers and the error responses sent on behalf of the
+     * reader loop. The reader loop itself runs on its own thread, so a pool
+     * saturated with blocked handlers can never stop responses from being read.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Only an executor created by this instance is shut down with it.
+     */
+    private final boolean ownsExecutor;
+
+    private volatile @Nullable Thread reader;
+
+    private final Map<String, MethodDispatcher> methods = new ConcurrentHashMap<>();
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
 
     private volatile boolean shutdown = false;
 
+    private volatile RequestIdGenerator idGenerator = DEFAULT_ID_GENERATOR;
+    private volatile @Nullable Duration defaultTimeout;
+    private volatile boolean cancelOnTimeout;
+    private volatile @Nullable InFlightWindow inFlightWindow;
+
+    private volatile boolean parallelDecode;
+    private volatile Set<String> orderedMethods = Collections.emptySet();
+
+    /**
+     * Frames still being decoded, in the order they arrived, with
+     * {@link #parallelDecode}. Guarded by itself.
+     */
+    private final Deque<DecodingFrame> decodeOrder = new ArrayDeque<>();
+
+    /**
+     * The last dispatch of each ordered method, which the next one runs after.
+     * Guarded by {@link #decodeOrder}.
+     */
+    private final Map<String, CompletableFuture<Void>> orderedDispatches = new HashMap<>();
+
+    /**
+     * Frames handed to the executor to decode and not yet done with. Also the
+     * monitor {@link #awaitPendingDecodes()} waits on.
+     */
+    private final AtomicInteger pendingDecodes = new AtomicInteger();
+
     private final MessageHandler messageHandler;
     private final MessageFormatter formatter;
-    private final Map<Object, CompletableFuture<JsonRpcSuccess>> openRequests = new ConcurrentHashMap<>();
+    private final OpenRequests openRequests = new OpenRequests();
+
+    /**
+     * Requests from the peer that are queued or running, so a
+     * {@code $/cancelRequest} can reach their handlers.
+     */
+    private final Map<Object, CancellationToken> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Requests of ours whose results the peer streams, by partial result token.
+     */
+    private final Map<Object, PartialResults<?>> partialResults = new ConcurrentHashMap<>();
+    private final ValueReader<Object> progressTokenReader;
+    private final ValueReader<Object> partialResultTokenReader;
+
+    /**
+     * Partial results the peer has room for, for the requests of theirs we
+     * stream results to, by partial result token.
+     */
+    private final Map<Object, Semaphore> partialResultCredits = new ConcurrentHashMap<>();
+    private final ValueReader<Integer> partialResultWindowReader;
+    private final ValueReader<Integer> partialResultCountReader;
 
     /**
      * @deprecated Use {@link #JsonRpc(MessageHandler, MessageFormatter)} instead.
@@ -44,18 +152,238 @@ public class JsonRpc {
     }
 
     public JsonRpc(MessageHandler messageHandler, MessageFormatter formatter) {
+        this(messageHandler, formatter, new ForkJoinPool(
+                4, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true), true);
+    }
+
+    /**
+     * Dispatch method handlers on the supplied executor, e.g. one sized to the
+     * host or to the handlers' blocking I/O. The caller keeps ownership of the
+     * executor: {@link #shutdown()} does not shut it down.
+     */
+    public JsonRpc(MessageHandler messageHandler, MessageFormatter formatter, ExecutorService executor) {
+        this(messageHandler, formatter, executor, false);
+    }
+
+    private JsonRpc(MessageHandler messageHandler, MessageFormatter formatter,
+                    ExecutorService executor, boolean ownsExecutor) {
         this.messageHandler = messageHandler;
         this.formatter = formatter;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.progressTokenReader = formatter.namedParamReader("token", Object.class);
+        this.partialResultTokenReader = formatter.namedParamReader(PARTIAL_RESULT_TOKEN, Object.class);
+        this.partialResultWindowReader = formatter.namedParamReader(PARTIAL_RESULT_WINDOW, Integer.class);
+        this.partialResultCountReader = formatter.namedParamReader("count", Integer.class);
+    }
+
+    /**
+     * Dispatch every request on a virtual thread of its own, so handlers that
+     * block on I/O or on nested requests back to the peer don't tie up a
+     * bounded pool. The executor is shut down with this instance.
+     *
+     * @throws UnsupportedOperationException when not running on JDK 21 or later.
+     */
+    public static JsonRpc virtualThreadPerRequest(MessageHandler messageHandler, MessageFormatter formatter) {
+        ExecutorService virtualThreads;
+        try {
+            // Looked up reflectively as this library still targets Java 8.
+            virtualThreads = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new UnsupportedOperationException("Virtual threads require JDK 21 or later", e);
+        } catch (InvocationTargetException e) {
+            throw new UnsupportedOperationException("Virtual threads are not available", e.getCause());
+        }
+        return new JsonRpc(messageHandler, formatter, virtualThreads, true);
     }
 
     public <P> JsonRpc rpc(String name, JsonRpcMethod<P> method) {
+        register(name, MethodDispatcher.of(method), method.getParamType());
+        return this;
+    }
+
+    /**
+     * Replaces whatever was registered under {@code name}, bulkhead included.
+     */
+    private void register(String name, MethodDispatcher method, Type... paramTypes) {
+        for (Type paramType : paramTypes) {
+            if (!Void.class.equals(paramType)) {
+                formatter.registerType(paramType);
+            }
+        }
         methods.put(name, method);
+        bulkheads.remove(name);
+    }
+
+    /**
+     * Register a method whose requests are dispatched as {@code options} say,
+     * e.g. with a cap on how many run at once, so that a flood of one
+     * expensive method can't starve the others of dispatch threads.
+     *
+     * @throws IllegalArgumentException when {@code options} limit the queue
+     *                                  but not concurrency, so nothing would ever queue.
+     */
+    public <P> JsonRpc rpc(String name, JsonRpcMethod<P> method, MethodOptions options) {
+        if (options.getMaxConcurrency() == Integer.MAX_VALUE && options.getQueueSize() < Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("queueSize of " + name + " has no effect without a maxConcurrency");
+        }
+        rpc(name, method);
+        if (options.getMaxConcurrency() < Integer.MAX_VALUE) {
+            // The bulkhead hands back its slot when the executor rejects a
+            // task, so it needs to see the rejection execute() would swallow.
+            bulkheads.put(name, new Bulkhead(name, options, executor));
+        }
+        return this;
+    }
+
+    /**
+     * @return the bulkhead limiting {@code method}, for its metrics, or
+     * {@code null} if its dispatch is unbounded.
+     */
+    public @Nullable Bulkhead getBulkhead(String method) {
+        return bulkheads.get(method);
+    }
+
+    /**
+     * Register every public method of {@code service} annotated with
+     * {@link Rpc}, under the annotation's name or else the method's own.
+     */
+    public JsonRpc bindService(Object service) {
+        for (Method method : service.getClass().getMethods()) {
+            Rpc rpc = method.getAnnotation(Rpc.class);
+            if (rpc != null) {
+                String name = rpc.value().isEmpty() ? method.getName() : rpc.value();
+                register(name, new ServiceMethod(service, method, formatter), method.getGenericParameterTypes());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return an implementation of {@code api} whose abstract methods send
+     * requests to the peer, named by {@link Rpc} or else by the method itself.
+     * Parameters are sent the way {@link #bindService(Object)} takes them.
+     * Methods returning a {@link CompletableFuture} or {@link CompletionStage}
+     * get the converted result asynchronously, {@code void} methods send a
+     * notification, and any other method blocks for its result. A blocking
+     * method that doesn't declare {@link JsonRpcException} gets it wrapped in
+     * a {@link CompletionException}, as from {@link CompletableFuture#join()}.
+     * Default methods run locally, on the proxy.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T proxy(Class<T> api) {
+        if (!api.isInterface()) {
+            throw new IllegalArgumentException(api.getName() + " is not an interface");
+        }
+        return (T) Proxy.newProxyInstance(api.getClassLoader(), new Class<?>[]{api},
+                new ServiceProxy(this, api, formatter));
+    }
+
+    /**
+     * Take the ids of {@link #newRequest} and {@link #proxy} requests from
+     * {@code idGenerator}, for this connection only. Configure before sending.
+     */
+    public JsonRpc idGenerator(RequestIdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
         return this;
     }
 
+    /**
+     * @return a request with an id from this connection's {@link #idGenerator}.
+     */
+    public JsonRpcRequest newRequest(String method, @Nullable Object params) {
+        return new JsonRpcRequest(idGenerator.nextId(), method, params == null ? null : RawJson.of(params));
+    }
+
+    public JsonRpcRequest newRequest(String method) {
+        return new JsonRpcRequest(idGenerator.nextId(), method, null);
+    }
+
+    /**
+     * Fail requests that get no response within {@code timeout} with a
+     * {@link TimeoutException}, unless a timeout is given for the request
+     * itself with {@link #send(JsonRpcRequest, Duration)}.
+     *
+     * @param timeout the default timeout, or {@code null} to wait indefinitely.
+     */
+    public JsonRpc defaultTimeout(@Nullable Duration timeout) {
+        this.defaultTimeout = timeout;
+        return this;
+    }
+
+    /**
+     * Whether a request that times out is also withdrawn from the peer with a
+     * {@code $/cancelRequest}, as if its future had been cancelled.
+     */
+    public JsonRpc cancelOnTimeout(boolean cancelOnTimeout) {
+        this.cancelOnTimeout = cancelOnTimeout;
+        return this;
+    }
+
+    /**
+     * Bound the number of requests awaiting a response from the peer. Each
+     * request in a batch takes a slot of its own. Configure before sending.
+     *
+     * @param overflow what a send does while all slots are taken.
+     */
+    public JsonRpc maxInFlight(int maxInFlight, InFlightWindow.Overflow overflow) {
+        this.inFlightWindow = new InFlightWindow(maxInFlight, overflow, executor);
+        return this;
+    }
+
+    /**
+     * Have the reader thread only split the stream into frames, and decode
+     * them on the executor, so that a large message no longer holds up the
+     * ones that arrive behind it. Requires a handler that supports
+     * {@link MessageHandler#receiveFrame()}. Configure before binding.
+     * <p>
+     * Requests and notifications are then dispatched as soon as they are
+     * decoded, so they may run out of the order they arrived in, except those
+     * for the given methods and for {@link MethodOptions#sequential()} ones:
+     * these run one at a time, in the order they arrived, once everything
+     * received before them has been decoded. A {@code $/cancelRequest} also
+     * waits for everything received before it, so it still finds the request
+     * it cancels.
+     */
+    public JsonRpc parallelDecode(String... orderedMethods) {
+        this.orderedMethods = new HashSet<>(Arrays.asList(orderedMethods));
+        this.parallelDecode = true;
+        return this;
+    }
+
+    /**
+     * @return the in-flight window configured with {@link #maxInFlight}, for
+     * its metrics, or {@code null} if sends are unbounded.
+     */
+    public @Nullable InFlightWindow getInFlightWindow() {
+        return inFlightWindow;
+    }
+
+    /**
+     * Cancelling the returned future withdraws the request: it stops waiting
+     * for a response and sends the peer a {@code $/cancelRequest}.
+     */
     public CompletableFuture<JsonRpcSuccess> send(JsonRpcRequest request) {
-        CompletableFuture<JsonRpcSuccess> response = new CompletableFuture<>();
-        openRequests.put(request.getId(), response);
+        return send(request, defaultTimeout);
+    }
+
+    /**
+     * @param timeout how long to wait for the response before failing the
+     *                future with a {@link TimeoutException}, or {@code null} to
+     *                wait indefinitely.
+     */
+    public CompletableFuture<JsonRpcSuccess> send(JsonRpcRequest request, @Nullable Duration timeout) {
+        InFlightWindow window = inFlightWindow;
+        if (window == null) {
+            return sendNow(request, timeout);
+        }
+        return window.submit(1, () -> Collections.singletonList(sendNow(request, timeout))).get(0);
+    }
+
+    private CompletableFuture<JsonRpcSuccess> sendNow(JsonRpcRequest request, @Nullable Duration timeout) {
+        CompletableFuture<JsonRpcSuccess> response = open(request.getId(), timeout);
         if (shutdown) {
             // Reader loop already exited (peer EOF or explicit shutdown) and
             // may have drained openRequests before our put. Fail the future
@@ -70,114 +398,791 @@ public class JsonRpc {
         return response;
     }
 
+    /**
+     * Send the requests in a single frame as a JSON-RPC batch. The peer
+     * answers with one batch of responses, which are correlated back to the
+     * requests by id.
+     *
+     * @return a future per request, in the order of {@code requests}.
+     */
+    public List<CompletableFuture<JsonRpcSuccess>> sendBatch(List<JsonRpcRequest> requests) {
+        InFlightWindow window = inFlightWindow;
+        if (window == null) {
+            return sendBatchNow(requests);
+        }
+        return window.submit(requests.size(), () -> sendBatchNow(requests));
+    }
+
+    private List<CompletableFuture<JsonRpcSuccess>> sendBatchNow(List<JsonRpcRequest> requests) {
+        List<CompletableFuture<JsonRpcSuccess>> responses = new ArrayList<>(requests.size());
+        Duration timeout = defaultTimeout;
+        for (JsonRpcRequest request : requests) {
+            responses.add(open(request.getId(), timeout));
+        }
+        if (shutdown) {
+            // Same race with the reader loop's drain as in send().
+            JsonRpcException closed = new JsonRpcException(
+                    JsonRpcError.internalError(null, "JSON-RPC peer closed the stream"));
+            for (int i = 0; i < requests.size(); i++) {
+                openRequests.remove(requests.get(i).getId());
+                responses.get(i).completeExceptionally(closed);
+            }
+            return responses;
+        }
+        messageHandler.send(new JsonRpcBatch(new ArrayList<>(requests)), formatter);
+        return responses;
+    }
+
+    private CompletableFuture<JsonRpcSuccess> open(Object id, @Nullable Duration timeout) {
+        CompletableFuture<JsonRpcSuccess> response = new CompletableFuture<>();
+        // Open before the timer is armed, or a short timeout can fire on the
+        // timer thread, find nothing to remove, and never complete the response.
+        openRequests.put(id, response);
+        HashedWheelTimer.Timeout timer = timeout == null ? null : HashedWheelTimer.shared().newTimeout(
+                () -> timeOut(id, response, timeout), timeout.toNanos(), TimeUnit.NANOSECONDS);
+        response.whenComplete((success, t) -> {
+            if (timer != null) {
+                timer.cancel();
+            }
+            // Only a request still open on our side is worth cancelling on
+            // the peer's; the conditional remove also makes a cancel that
+            // races the response a no-op.
+            if (response.isCancelled() && openRequests.remove(id, response)) {
+                sendCancel(id);
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Runs on the timer thread, so anything slower than completing the future
+     * is handed to the executor.
+     */
+    private void timeOut(Object id, CompletableFuture<JsonRpcSuccess> response, Duration timeout) {
+        if (!openRequests.remove(id, response)) {
+            return;
+        }
+        response.completeExceptionally(new TimeoutException(
+                "JSON-RPC request " + id + " received no response within " + timeout));
+        if (cancelOnTimeout && !shutdown) {
+            execute(() -> sendCancel(id));
+        }
+    }
+
+    private void sendCancel(Object id) {
+        messageHandler.send(new JsonRpcRequest(null, CANCEL_REQUEST,
+                RawJson.of(Collections.singletonMap("id", id))), formatter);
+    }
+
+    /**
+     * Send a request whose result is a list, asking the peer to stream the
+     * elements in {@code $/progress} partial results as the Language Server
+     * Protocol does, instead of answering with the whole list at once. The
+     * token is added to the request's named {@code params} as
+     * {@code partialResultToken}, along with a {@code partialResultWindow},
+     * so its params type must allow for both.
+     * <p>
+     * Partial results are queued in the order they arrive, so this is not
+     * available together with {@link #parallelDecode}. The reader loop never
+     * waits for the iterator to take them, or it would hold up everything
+     * else on the connection. Instead, as the iterator takes them, the peer is
+     * told it may send more, up to the window ahead, which this library's own
+     * {@link JsonRpcMethod} side honors. A peer that ignores the window, as a
+     * Language Server Protocol peer would, sends partial results as fast as
+     * it can, and those the iterator hasn't taken yet are held in memory.
+     *
+     * @return the elements as they arrive. A peer that doesn't stream them
+     * sends them all in the response, which is iterated just the same.
+     */
+    public <T> PartialResults<T> sendForPartialResults(JsonRpcRequest request, Class<T> elementType) {
+        if (parallelDecode) {
+            throw new IllegalStateException("Partial results need frames to be decoded in arrival order");
+        }
+        Map<Object, Object> params = new LinkedHashMap<>();
+        Object named = request.getParams() == null ? null : formatter.convertValue(request.getParams(), Object.class);
+        if (named instanceof Map) {
+            params.putAll((Map<?, ?>) named);
+        } else if (named != null) {
+            throw new IllegalArgumentException("Partial results need named params to pass their token in");
+        }
+        // Request ids are unique among open requests, so they do as tokens.
+        String token = String.valueOf(request.getId());
+        params.put(PARTIAL_RESULT_TOKEN, token);
+        params.put(PARTIAL_RESULT_WINDOW, PartialResults.WINDOW);
+
+        PartialResults<T> results = new PartialResults<>(elementType, formatter,
+                count -> sendPartialResultAck(token, count));
+        partialResults.put(token, results);
+        CompletableFuture<JsonRpcSuccess> response = send(new JsonRpcRequest(request.getId(), request.getMethod(), RawJson.of(params)));
+        response.whenComplete((success, t) -> partialResults.remove(token, results));
+        results.attach(response);
+        return results;
+    }
+
     public void notify(JsonRpcRequest request) {
         messageHandler.send(request, formatter);
     }
 
     public JsonRpc bind() {
         shutdown = false;
-        forkJoin.submit(new RecursiveAction() {
-            @Override
-            protected void compute() {
-                while (!shutdown) {
-                    Object requestId = null;
-                    try {
-                        JsonRpcMessage msg = messageHandler.receive(formatter);
-                        if (msg instanceof JsonRpcResponse) {
-                            JsonRpcResponse response = (JsonRpcResponse) msg;
-                            Object id = response.getId();
-                            if (id != null) {
-                                CompletableFuture<JsonRpcSuccess> responseFuture = openRequests.remove(id);
-                                if (response instanceof JsonRpcError) {
-                                    responseFuture.completeExceptionally(new JsonRpcException((JsonRpcError) response));
-                                } else if (response instanceof JsonRpcSuccess) {
-                                    responseFuture.complete((JsonRpcSuccess) response);
-                                }
-                            } else if (response instanceof JsonRpcError && !openRequests.isEmpty()) {
-                                // Error with no id — fail all open requests since we
-                                // can't correlate this error to a specific one. Skip
-                                // when there's nothing to fail; allocating a Throwable
-                                // (and filling its stack) per malformed message is
-                                // expensive enough to peg a CPU when an upstream peer
-                                // emits non-RPC noise on the wire.
-                                JsonRpcException exception = new JsonRpcException((JsonRpcError) response);
-                                for (CompletableFuture<JsonRpcSuccess> future : openRequests.values()) {
-                                    future.completeExceptionally(exception);
-                                }
-                            }
-                        } else if (msg instanceof JsonRpcRequest) {
-                            JsonRpcRequest request = (JsonRpcRequest) msg;
-                            requestId = request.getId();
-                            JsonRpcMethod<?> method = methods.get(request.getMethod());
-                            if (method == null) {
-                                // Fork error sends off the reader thread to avoid
-                                // deadlock with synchronized send()
-                                Object errorId = request.getId();
-                                String errorMethod = request.getMethod();
-                                ForkJoinTask.adapt(() ->
-                                        messageHandler.send(JsonRpcError.methodNotFound(errorId, errorMethod), formatter)
-                                ).fork();
-                            } else {
-                                ForkJoinTask.adapt(() -> dispatch(request, method)).fork();
-                            }
-                        }
-                    } catch (EOFException e) {
-                        // Peer closed the stream — there's nothing more to read.
-                        // Set shutdown FIRST so a concurrent send() observes it
-                        // and fails its own future after put; otherwise a request
-                        // registered after this drain would be stranded.
-                        shutdown = true;
-                        JsonRpcException eof = new JsonRpcException(
-                                JsonRpcError.internalError(null, "JSON-RPC peer closed the stream"));
-                        for (CompletableFuture<JsonRpcSuccess> future : openRequests.values()) {
-                            future.completeExceptionally(eof);
+        Thread readerThread = new Thread(this::readLoop, "jsonrpc-reader");
+        readerThread.setDaemon(true);
+        reader = readerThread;
+        readerThread.start();
+        return this;
+    }
+
+    private void readLoop() {
+        while (!shutdown) {
+            Object requestId = null;
+            try {
+                if (parallelDecode) {
+                    decodeOnExecutor(messageHandler.receiveFrame());
+                    continue;
+                }
+                JsonRpcMessage msg = messageHandler.receive(formatter);
+                if (msg instanceof JsonRpcRequest) {
+                    requestId = msg.getId();
+                }
+                accept(msg, false);
+            } catch (EOFException e) {
+                awaitPendingDecodes();
+                // Peer closed the stream — there's nothing more to read.
+                // Set shutdown FIRST so a concurrent send() observes it
+                // and fails its own future after put; otherwise a request
+                // registered after this drain would be stranded.
+                shutdown = true;
+                JsonRpcException eof = new JsonRpcException(
+                        JsonRpcError.internalError(null, "JSON-RPC peer closed the stream"));
+                for (CompletableFuture<JsonRpcSuccess> future : openRequests.values()) {
+                    future.completeExceptionally(eof);
+                }
+                openRequests.clear();
+            } catch (JsonRpcReceiveException e) {
+                // Frame- or parse-level failure on an inbound message.
+                // Send the error back to the peer; do NOT touch
+                // openRequests — those track responses we're waiting
+                // for from the peer, and the peer's malformed message
+                // is not one of them. Treating it as one would either
+                // complete an unrelated future on id collision, or
+                // (worse, on null id) fail every open request at once.
+                JsonRpcError errorToPeer = e.toError();
+                sendAsync(errorToPeer);
+            } catch (Throwable t) {
+                if (shutdown) {
+                    // Interrupted out of a blocking read by shutdown().
+                    return;
+                }
+                // Send errors off the reader thread to avoid deadlock
+                // with synchronized send()
+                sendAsync(JsonRpcError.internalError(requestId, t));
+            }
+        }
+    }
+
+    /**
+     * @param onExecutor whether this is already running on the executor, in
+     *                   which case a request is dispatched right here.
+     */
+    private void accept(JsonRpcMessage msg, boolean onExecutor) {
+        if (msg instanceof JsonRpcResponse) {
+            complete((JsonRpcResponse) msg);
+        } else if (msg instanceof JsonRpcRequest) {
+            JsonRpcRequest request = (JsonRpcRequest) msg;
+            if (CANCEL_REQUEST.equals(request.getMethod())) {
+                cancelInbound(request);
+            } else if (!partialResultControl(request)) {
+                admit(request, track(request), onExecutor);
+            }
+        } else if (msg instanceof JsonRpcBatch) {
+            dispatchBatch((JsonRpcBatch) msg);
+        }
+    }
+
+    /**
+     * Make a request from the peer cancellable from the moment it arrives, so
+     * a {@code $/cancelRequest} also reaches one still queued for a dispatch
+     * thread or behind a {@link Bulkhead}. The token is dropped once the
+     * request has been answered.
+     */
+    private CancellationToken track(JsonRpcRequest request) {
+        Object id = request.getId();
+        if (id == null) {
+            return CancellationToken.NONE;
+        }
+        CancellationToken token = new CancellationToken();
+        inFlight.put(id, token);
+        return token;
+    }
+
+    private void untrack(JsonRpcRequest request, CancellationToken token) {
+        if (token != CancellationToken.NONE) {
+            inFlight.remove(request.getId(), token);
+        }
+    }
+
+    private void admit(JsonRpcRequest request, CancellationToken token, boolean onExecutor) {
+        Bulkhead bulkhead = bulkheads.get(request.getMethod());
+        if (bulkhead == null) {
+            if (onExecutor) {
+                dispatch(request, token);
+            } else {
+                // Dispatch off the reader thread, error responses
+                // included, to avoid deadlock with synchronized send()
+                execute(() -> dispatch(request, token));
+            }
+        } else {
+            boolean admitted;
+            try {
+                admitted = bulkhead.submit(() -> dispatch(request, token));
+            } catch (RejectedExecutionException e) {
+                rejected(e);
+                return;
+            }
+            if (!admitted) {
+                untrack(request, token);
+                if (request.getId() != null) {
+                    sendAsync(JsonRpcError.overloaded(request.getId(), request.getMethod()));
+                }
+            }
+        }
+    }
+
+    private void decodeOnExecutor(ByteBuffer received) {
+        // The handler reuses the frame's buffer for the next one. A formatter
+        // that retains its input keeps referring to the copy, which then
+        // can't go back to the pool.
+        boolean pooled = !formatter.retainsInput();
+        int length = received.remaining();
+        byte[] copy = pooled ? BufferPool.shared().acquire(length) : new byte[length];
+        received.get(copy, 0, length);
+        ByteBuffer frame = ByteBuffer.wrap(copy, 0, length);
+        DecodingFrame decoding = new DecodingFrame();
+        synchronized (decodeOrder) {
+            decodeOrder.add(decoding);
+        }
+        pendingDecodes.incrementAndGet();
+        Runnable decode = () -> {
+            JsonRpcRequest ordered = null;
+            CancellationToken orderedToken = CancellationToken.NONE;
+            JsonRpcRequest unordered = null;
+            CancellationToken unorderedToken = CancellationToken.NONE;
+            try {
+                JsonRpcMessage msg = messageHandler.decodeFrame(frame, formatter);
+                JsonRpcRequest request = msg instanceof JsonRpcRequest ? (JsonRpcRequest) msg : null;
+                if (request != null && isOrdered(request.getMethod())) {
+                    ordered = request;
+                    orderedToken = track(ordered);
+                } else if (request != null && !partialResultControl(request)) {
+                    // Tracked before this frame counts as decoded, so a cancel
+                    // behind it finds it, but dispatched only after, so that
+                    // cancel isn't held up until the request has been answered.
+                    unordered = request;
+                    unorderedToken = track(unordered);
+                } else if (request == null) {
+                    accept(msg, true);
+                }
+            } catch (JsonRpcReceiveException e) {
+                messageHandler.send(e.toError(), formatter);
+            } catch (IOException e) {
+                messageHandler.send(JsonRpcError.internalError(null, e), formatter);
+            } finally {
+                if (pooled) {
+                    BufferPool.shared().release(copy);
+                }
+                decoded(decoding, ordered, orderedToken);
+                decodeFinished();
+            }
+            if (unordered != null) {
+                admit(unordered, unorderedToken, true);
+            }
+        };
+        try {
+            executor.execute(decode);
+        } catch (RejectedExecutionException e) {
+            decodeFinished();
+            rejected(e);
+        }
+    }
+
+    private void decodeFinished() {
+        if (pendingDecodes.decrementAndGet() == 0) {
+            synchronized (pendingDecodes) {
+                pendingDecodes.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Frames received before the peer closed the stream may still be
+     * decoding, and the responses among them must complete their requests
+     * before the rest are failed for the closed stream.
+     */
+    private void awaitPendingDecodes() {
+        synchronized (pendingDecodes) {
+            while (pendingDecodes.get() > 0) {
+                try {
+                    pendingDecodes.wait();
+                } catch (InterruptedException e) {
+                    // shutdown()
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Dispatch the ordered requests that no longer wait on an earlier frame.
+     */
+    private void decoded(DecodingFrame decoding, @Nullable JsonRpcRequest ordered, CancellationToken orderedToken) {
+        synchronized (decodeOrder) {
+            decoding.decoded = true;
+            decoding.ordered = ordered;
+            decoding.token = orderedToken;
+            DecodingFrame next;
+            while ((next = decodeOrder.peek()) != null && next.decoded) {
+                decodeOrder.poll();
+                JsonRpcRequest request = next.ordered;
+                CancellationToken token = next.token;
+                if (request != null && CANCEL_REQUEST.equals(request.getMethod())) {
+                    // Every request that arrived before it is tracked by now.
+                    cancelInbound(request);
+                } else if (request != null) {
+                    CompletableFuture<Void> previous = orderedDispatches.get(request.getMethod());
+                    CompletableFuture<Void> after = previous == null ?
+                            CompletableFuture.completedFuture(null) :
+                            previous.handle((ignored, t) -> null);
+                    orderedDispatches.put(request.getMethod(),
+                            after.thenComposeAsync(ignored -> admitInOrder(request, token), executor));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return when the next ordered request may be admitted: once this one
+     * has been answered, or for a method with a bulkhead, as soon as it has
+     * joined the bulkhead's queue, which keeps arrival order from there.
+     */
+    private CompletionStage<Void> admitInOrder(JsonRpcRequest request, CancellationToken token) {
+        Bulkhead bulkhead = bulkheads.get(request.getMethod());
+        if (bulkhead == null) {
+            return dispatch(request, token);
+        }
+        admit(request, token, true);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Whether requests for the method must be dispatched in arrival order:
+     * when named to {@link #parallelDecode}, or {@link MethodOptions#sequential()}.
+     * A {@code $/cancelRequest} waits for every frame before it, so it can't
+     * overtake the request it cancels while that is still being decoded.
+     */
+    private boolean isOrdered(String method) {
+        if (CANCEL_REQUEST.equals(method) || orderedMethods.contains(method)) {
+            return true;
+        }
+        Bulkhead bulkhead = bulkheads.get(method);
+        return bulkhead != null && bulkhead.getMaxConcurrency() == 1;
+    }
+
+    private static class DecodingFrame {
+        boolean decoded;
+        @Nullable JsonRpcRequest ordered;
+        CancellationToken token = CancellationToken.NONE;
+    }
+
+    private void sendAsync(JsonRpcMessage message) {
+        execute(() -> messageHandler.send(message, formatter));
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected(e);
+        }
+    }
+
+    private void rejected(RejectedExecutionException e) {
+        // The executor is shutting down along with this instance (or the
+        // caller shut down the executor it supplied); nothing can be
+        // dispatched or sent any more.
+        if (!shutdown && !executor.isShutdown()) {
+            throw e;
+        }
+    }
+
+    private void complete(JsonRpcResponse response) {
+        Object id = response.getId();
+        if (id != null) {
+            CompletableFuture<JsonRpcSuccess> responseFuture = openRequests.remove(id);
+            if (responseFuture == null) {
+                // Cancelled on our side, or not a request of ours at all.
+                return;
+            }
+            if (response instanceof JsonRpcError) {
+                responseFuture.completeExceptionally(new JsonRpcException((JsonRpcError) response));
+            } else if (response instanceof JsonRpcSuccess) {
+                responseFuture.complete((JsonRpcSuccess) response);
+            }
+        } else if (response instanceof JsonRpcError && !openRequests.isEmpty()) {
+            // Error with no id — fail all open requests since we
+            // can't correlate this error to a specific one. Skip
+            // when there's nothing to fail; allocating a Throwable
+            // (and filling its stack) per malformed message is
+            // expensive enough to peg a CPU when an upstream peer
+            // emits non-RPC noise on the wire.
+            JsonRpcException exception = new JsonRpcException((JsonRpcError) response);
+            for (CompletableFuture<JsonRpcSuccess> future : openRequests.values()) {
+                future.completeExceptionally(exception);
+            }
+        }
+    }
+
+    /**
+     * Responses in a batch complete their open requests right away. Requests
+     * are dispatched in parallel, and once the last of them has been handled
+     * their responses go back to the peer together as one batch. Notifications
+     * (requests without an id) get no response, per the spec.
+     */
+    private void dispatchBatch(JsonRpcBatch batch) {
+        List<JsonRpcRequest> requests = new ArrayList<>();
+        for (JsonRpcMessage message : batch.getMessages()) {
+            if (message instanceof JsonRpcResponse) {
+                complete((JsonRpcResponse) message);
+            } else if (message instanceof JsonRpcRequest) {
+                JsonRpcRequest request = (JsonRpcRequest) message;
+                if (CANCEL_REQUEST.equals(request.getMethod())) {
+                    cancelInbound(request);
+                } else if (!partialResultControl(request)) {
+                    requests.add(request);
+                }
+            }
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        JsonRpcMessage[] outbound = new JsonRpcMessage[requests.size()];
+        AtomicInteger remaining = new AtomicInteger(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            int index = i;
+            CancellationToken token = track(requests.get(index));
+            execute(() -> handle(requests.get(index), token).thenAccept(response -> {
+                outbound[index] = response;
+                // The last element to finish sends the batch. The decrement
+                // also publishes every other element's response to it.
+                if (remaining.decrementAndGet() == 0) {
+                    List<JsonRpcMessage> responses = new ArrayList<>(outbound.length);
+                    for (int j = 0; j < outbound.length; j++) {
+                        if (requests.get(j).getId() != null) {
+                            responses.add(outbound[j]);
                         }
-                        openRequests.clear();
-                    } catch (JsonRpcReceiveException e) {
-                        // Frame- or parse-level failure on an inbound message.
-                        // Send the error back to the peer; do NOT touch
-                        // openRequests — those track responses we're waiting
-                        // for from the peer, and the peer's malformed message
-                        // is not one of them. Treating it as one would either
-                        // complete an unrelated future on id collision, or
-                        // (worse, on null id) fail every open request at once.
-                        JsonRpcError errorToPeer = e.toError();
-                        ForkJoinTask.adapt(() ->
-                                messageHandler.send(errorToPeer, formatter)
-                        ).fork();
-                    } catch (Throwable t) {
-                        // Fork error sends off the reader thread to avoid
-                        // deadlock with synchronized send()
-                        Object errorReqId = requestId;
-                        Throwable errorT = t;
-                        ForkJoinTask.adapt(() ->
-                                messageHandler.send(JsonRpcError.internalError(errorReqId, errorT), formatter)
-                        ).fork();
+                    }
+                    if (!responses.isEmpty()) {
+                        messageHandler.send(new JsonRpcBatch(responses), formatter);
                     }
                 }
+            }));
+        }
+    }
+
+    /**
+     * @return completed once the response has been sent, or right away for a
+     * notification, unless the handler answers asynchronously.
+     */
+    private CompletionStage<Void> dispatch(JsonRpcRequest request, CancellationToken token) {
+        return handle(request, token).thenAccept(response -> {
+            if (request.getId() != null) {
+                // Notifications get no response, per the spec.
+                messageHandler.send(response, formatter);
             }
         });
-        return this;
     }
 
-    private void dispatch(JsonRpcRequest request, JsonRpcMethod<?> method) {
-        JsonRpcMessage outbound;
+    /**
+     * @param token from {@link #track}, which this releases once answered.
+     */
+    private CompletableFuture<JsonRpcMessage> handle(JsonRpcRequest request, CancellationToken token) {
+        MethodDispatcher method = methods.get(request.getMethod());
+        if (method == null) {
+            untrack(request, token);
+            return CompletableFuture.completedFuture(JsonRpcError.methodNotFound(request.getId(), request.getMethod()));
+        }
+        CompletableFuture<JsonRpcMessage> response = invoke(request, method, token);
+        if (response.isDone()) {
+            untrack(request, token);
+            return response;
+        }
+        return response.whenComplete((r, t) -> untrack(request, token));
+    }
+
+    /**
+     * A handler may return a {@link CompletionStage} instead of its result,
+     * e.g. to make a nested request to the peer without blocking a dispatch
+     * thread on it. The response is then sent once the stage completes, and a
+     * {@code $/cancelRequest} cancels the stage if it is a {@link Future}.
+     */
+    private CompletableFuture<JsonRpcMessage> invoke(JsonRpcRequest request, MethodDispatcher method,
+                                                     CancellationToken token) {
+        if (token.isCancellationRequested()) {
+            // Cancelled while still queued for a dispatch thread.
+            return CompletableFuture.completedFuture(JsonRpcError.requestCancelled(request.getId()));
+        }
+        token.enter(method.interruptOnCancel());
         try {
             Object result = method.convertAndHandle(request.getParams(), formatter);
-            // Wrap the handler's return value so the on-wire representation
-            // goes through the same RawJson + Jackson serializer pipeline
-            // as inbound-converted values.
-            outbound = result != null
-                    ? new JsonRpcSuccess(request.getId(), RawJson.of(result))
-                    : JsonRpcError.internalError(request.getId(), "Method returned null");
+            if (result instanceof CompletionStage) {
+                return answerWhenComplete(request, (CompletionStage<?>) result, token);
+            }
+            if (result instanceof Collection || result instanceof Stream || result instanceof Iterator) {
+                Object partialResultToken = partialResultToken(request);
+                if (partialResultToken != null) {
+                    return CompletableFuture.completedFuture(
+                            sendPartialResults(request, partialResultToken, result, token));
+                }
+                if (!(result instanceof Collection)) {
+                    // An iterator would otherwise be serialized as a bean,
+                    // fields and all, and a stream not at all.
+                    List<Object> elements = new ArrayList<>();
+                    try {
+                        elements(result).forEachRemaining(elements::add);
+                    } finally {
+                        if (result instanceof AutoCloseable) {
+                            ((AutoCloseable) result).close();
+                        }
+                    }
+                    result = elements;
+                }
+            }
+            return CompletableFuture.completedFuture(success(request, result));
         } catch (Exception e) {
-            outbound = JsonRpcError.internalError(request.getId(), e);
+            return CompletableFuture.completedFuture(failure(request, e, token));
+        } finally {
+            token.exit();
+        }
+    }
+
+    private CompletableFuture<JsonRpcMessage> answerWhenComplete(JsonRpcRequest request, CompletionStage<?> stage,
+                                                                 CancellationToken token) {
+        if (stage instanceof Future && token != CancellationToken.NONE) {
+            token.cancelWith((Future<?>) stage);
+        }
+        CompletableFuture<JsonRpcMessage> response = new CompletableFuture<>();
+        // The stage may well be completed by the reader loop, as when it
+        // waits on a nested request, and the response must not be sent from
+        // there.
+        stage.whenCompleteAsync((result, t) -> response.complete(t == null
+                ? success(request, result)
+                : failure(request, t instanceof CompletionException && t.getCause() != null ? t.getCause() : t, token)
+        ), this::execute);
+        return response;
+    }
+
+    /**
+     * Wrap the handler's result so the on-wire representation goes through
+     * the same RawJson + Jackson serializer pipeline as inbound-converted
+     * values. A handler answers JSON {@code null} with {@code RawJson.of(null)},
+     * whether it returns it or completes its stage with it.
+     */
+    private static JsonRpcResponse success(JsonRpcRequest request, @Nullable Object result) {
+        if (result == null) {
+            return JsonRpcError.internalError(request.getId(), "Method returned null");
+        }
+        return new JsonRpcSuccess(request.getId(), result instanceof RawJson ? (RawJson) result : RawJson.of(result));
+    }
+
+    private static JsonRpcError failure(JsonRpcRequest request, Throwable t, CancellationToken token) {
+        // However the handler bailed out after a cancel (interrupted,
+        // CancellationException, ...), the peer expects the cancel code.
+        return token.isCancellationRequested()
+                ? JsonRpcError.requestCancelled(request.getId())
+                : JsonRpcError.internalError(request.getId(), t);
+    }
+
+    /**
+     * @return the token under which the peer asked for the result in partial
+     * results, if it did. Positional params have no room for one.
+     */
+    private @Nullable Object partialResultToken(JsonRpcRequest request) {
+        RawJson params = request.getParams();
+        return params == null ? null : partialResultTokenReader.read(params);
+    }
+
+    /**
+     * Send the elements in {@code $/progress} partial results straight from
+     * the handler's iterator, so neither the list nor its JSON is ever held
+     * whole. Sending waits while the peer has no room for more, as far as it
+     * names a window, and otherwise while it is behind on reading them.
+     *
+     * @return the response, which by then has no elements left to carry.
+     */
+    private JsonRpcMessage sendPartialResults(JsonRpcRequest request, Object partialResultToken, Object result,
+                                              CancellationToken token) throws Exception {
+        Semaphore credits = null;
+        Integer window = request.getParams() == null ? null : partialResultWindowReader.read(request.getParams());
+        if (window != null && window > 0) {
+            credits = new Semaphore(window);
+            partialResultCredits.put(partialResultToken, credits);
+        }
+        try {
+            Iterator<?> elements = elements(result);
+            // The first element goes out on its own, for the peer to get
+            // going on it. Batches then double in size, which amortizes the
+            // cost of a frame over more elements the longer the list runs.
+            int batchSize = 1;
+            List<Object> batch = new ArrayList<>(batchSize);
+            while (elements.hasNext()) {
+                if (token.isCancellationRequested()) {
+                    return JsonRpcError.requestCancelled(request.getId());
+                }
+                batch.add(elements.next());
+                if (batch.size() == batchSize) {
+                    if (!awaitCredit(credits, token)) {
+                        return JsonRpcError.requestCancelled(request.getId());
+                    }
+                    sendPartialResult(partialResultToken, batch);
+                    batchSize = Math.min(batchSize * 2, MAX_PARTIAL_RESULT_BATCH);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                if (!awaitCredit(credits, token)) {
+                    return JsonRpcError.requestCancelled(request.getId());
+                }
+                sendPartialResult(partialResultToken, batch);
+            }
+        } finally {
+            if (credits != null) {
+                partialResultCredits.remove(partialResultToken, credits);
+            }
+            if (result instanceof AutoCloseable) {
+                ((AutoCloseable) result).close();
+            }
+        }
+        return success(request, Collections.emptyList());
+    }
+
+    private static Iterator<?> elements(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).iterator();
+        }
+        return result instanceof Stream ? ((Stream<?>) result).iterator() : (Iterator<?>) result;
+    }
+
+    /**
+     * Wait until the peer has room for another partial result.
+     *
+     * @param credits {@code null} when the peer named no window.
+     * @return {@code false} if the request was cancelled, or the connection
+     * shut down, in the meantime.
+     */
+    private boolean awaitCredit(@Nullable Semaphore credits, CancellationToken token) throws InterruptedException {
+        if (credits == null) {
+            return true;
+        }
+        while (!credits.tryAcquire(PARTIAL_RESULT_CREDIT_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (token.isCancellationRequested() || shutdown) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sendPartialResult(Object partialResultToken, List<Object> batch) {
+        Map<String, Object> progress = new LinkedHashMap<>(4);
+        progress.put("token", partialResultToken);
+        progress.put("value", batch);
+        messageHandler.send(new JsonRpcRequest(null, PROGRESS, RawJson.of(progress)), formatter);
+    }
+
+    /**
+     * Handle the notifications partial results are streamed with, which are
+     * never dispatched to a method. Runs on the reader loop, to keep partial
+     * results in order.
+     *
+     * @return {@code false} for any other request, and for a
+     * {@code $/progress} with a token that isn't one of ours, e.g. for work
+     * done progress, which is left to the method's handler.
+     */
+    private boolean partialResultControl(JsonRpcRequest request) {
+        if (PROGRESS.equals(request.getMethod())) {
+            return partialResult(request);
+        }
+        if (PARTIAL_RESULT_ACK.equals(request.getMethod())) {
+            acknowledgePartialResults(request);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Route a {@code $/progress} from the peer to the request of ours it
+     * belongs to.
+     */
+    private boolean partialResult(JsonRpcRequest progress) {
+        RawJson params = progress.getParams();
+        if (partialResults.isEmpty() || params == null) {
+            return false;
+        }
+        Object partialResultToken = progressTokenReader.read(params);
+        PartialResults<?> results = partialResultToken == null ? null : partialResults.get(partialResultToken);
+        if (results == null) {
+            return false;
+        }
+        results.add(params);
+        return true;
+    }
+
+    private void acknowledgePartialResults(JsonRpcRequest ack) {
+        RawJson params = ack.getParams();
+        if (params == null) {
+            return;
+        }
+        Object partialResultToken = progressTokenReader.read(params);
+        Semaphore credits = partialResultToken == null ? null : partialResultCredits.get(partialResultToken);
+        Integer count = partialResultCountReader.read(params);
+        if (credits != null && count != null && count > 0) {
+            credits.release(count);
+        }
+    }
+
+    private void sendPartialResultAck(Object partialResultToken, int count) {
+        Map<String, Object> ack = new LinkedHashMap<>(4);
+        ack.put("token", partialResultToken);
+        ack.put("count", count);
+        sendAsync(new JsonRpcRequest(null, PARTIAL_RESULT_ACK, RawJson.of(ack)));
+    }
+
+    /**
+     * Handle a {@code $/cancelRequest} from the peer. Unknown or already
+     * completed ids are ignored, as the notification can always race the
+     * response.
+     */
+    private void cancelInbound(JsonRpcRequest cancel) {
+        RawJson params = cancel.getParams();
+        Map<?, ?> cancelParams = params == null ? null : formatter.convertValue(params, Map.class);
+        Object id = cancelParams == null ? null : cancelParams.get("id");
+        if (id != null) {
+            CancellationToken token = inFlight.get(id);
+            if (token != null) {
+                token.cancel();
+            }
         }
-        messageHandler.send(outbound, formatter);
     }
 
     public void shutdown() {
         shutdown = true;
-        forkJoin.shutdownNow();
+        Thread readerThread = reader;
+        if (readerThread != null) {
+            // Unblocks a reader waiting on an interruptible stream or channel.
+            readerThread.interrupt();
+        }
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
     }
 }
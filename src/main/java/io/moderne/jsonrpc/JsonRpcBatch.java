@@ -0,0 +1,45 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * A JSON-RPC 2.0 batch: several requests (or the responses to them) sent as a
+ * single top-level JSON array in one frame.
+ */
+@Value
+@EqualsAndHashCode(callSuper = false)
+public class JsonRpcBatch extends JsonRpcMessage {
+    /**
+     * Serialized as the bare array; the batch itself has no envelope.
+     */
+    @JsonValue
+    List<JsonRpcMessage> messages;
+
+    /**
+     * A batch has no id of its own; its elements do.
+     */
+    @Override
+    public @Nullable Object getId() {
+        return null;
+    }
+}
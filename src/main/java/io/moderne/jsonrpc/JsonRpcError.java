@@ -63,6 +63,23 @@ public class JsonRpcError extends JsonRpcResponse {
         return new JsonRpcError(id, new Detail(-32602, "Invalid params", null));
     }
 
+    /**
+     * The vscode-jsonrpc code for a request that was cancelled by the peer
+     * before it completed.
+     */
+    public static JsonRpcError requestCancelled(Object id) {
+        return new JsonRpcError(id, new Detail(-32800, "Request cancelled", null));
+    }
+
+    /**
+     * The request was turned away without being run, because too many
+     * requests for its method were already running or waiting. A server error
+     * in the range the spec reserves for implementations; the peer may retry.
+     */
+    public static JsonRpcError overloaded(Object id, String method) {
+        return new JsonRpcError(id, new Detail(-32000, "Server overloaded: " + method, null));
+    }
+
     public static JsonRpcError internalError(Object id, String message) {
         return new JsonRpcError(id, new Detail(-32603, "Internal error: " + message, null));
     }
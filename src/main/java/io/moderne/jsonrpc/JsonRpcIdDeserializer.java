@@ -30,12 +30,12 @@ public class JsonRpcIdDeserializer extends JsonDeserializer<Object> {
         // so a single switch on the current token covers every legal shape.
         switch (parser.currentToken()) {
             case VALUE_NUMBER_INT:
-                // Per the comment that used to live here: assume int. Any
-                // JSON-RPC client interacting with a JavaScript peer cannot
-                // send integers larger than Number.MAX_SAFE_INTEGER without
-                // losing precision, so widening to long isn't worth the API
-                // change.
-                return parser.getIntValue();
+                // Integer when it fits, as before; long otherwise, since the
+                // sequential request ids we hand out may outgrow an int.
+                if (parser.getNumberType() == JsonParser.NumberType.INT) {
+                    return parser.getIntValue();
+                }
+                return parser.getLongValue();
             case VALUE_STRING:
                 return parser.getText();
             case VALUE_NULL:
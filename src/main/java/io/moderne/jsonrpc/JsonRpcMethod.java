@@ -34,6 +34,10 @@ public abstract class JsonRpcMethod<P> {
                 .getActualTypeArguments()[0];
     }
 
+    Type getParamType() {
+        return paramType;
+    }
+
     @SuppressWarnings("unchecked")
     final Object convertAndHandle(@Nullable RawJson params, MessageFormatter formatter) throws Exception {
         if (Void.class.equals(paramType)) {
@@ -42,5 +46,31 @@ public abstract class JsonRpcMethod<P> {
         return handle(params == null ? null : (P) formatter.convertValue(params, paramType));
     }
 
+    /**
+     * @return the result, or a {@link java.util.concurrent.CompletionStage} of
+     * it to answer later without holding a dispatch thread while it is pending.
+     * Either way, {@code null} is answered with an internal error; return
+     * {@code RawJson.of(null)} to answer with JSON {@code null}.
+     * A {@link java.util.Collection}, {@link java.util.stream.Stream} or
+     * {@link java.util.Iterator} is sent an element at a time when the request
+     * asks for partial results, see {@link JsonRpc#sendForPartialResults}.
+     */
     protected abstract Object handle(P params) throws Exception;
+
+    /**
+     * @return the cancellation token of the request being handled on the
+     * calling thread. Only meaningful from within {@link #handle(Object)}.
+     */
+    protected final CancellationToken getCancellationToken() {
+        return CancellationToken.current();
+    }
+
+    /**
+     * Whether a {@code $/cancelRequest} from the peer should also interrupt the
+     * thread running {@link #handle(Object)}. Off by default: an interrupt
+     * closes any NIO channel the handler is blocked on.
+     */
+    protected boolean interruptOnCancel() {
+        return false;
+    }
 }
@@ -16,7 +16,6 @@
 package io.moderne.jsonrpc;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
-import io.moderne.jsonrpc.internal.SnowflakeId;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
 import org.jspecify.annotations.Nullable;
@@ -38,12 +37,17 @@ public class JsonRpcRequest extends JsonRpcMessage {
     @Nullable
     RawJson params;
 
+    /**
+     * @return a request with an id from the default generator. Use
+     * {@link JsonRpc#newRequest(String, Object)} for one from a connection's
+     * own {@link JsonRpc#idGenerator}.
+     */
     public static JsonRpcRequest newRequest(String method, @Nullable Object params) {
-        return new JsonRpcRequest(SnowflakeId.generateId(), method,
+        return new JsonRpcRequest(JsonRpc.DEFAULT_ID_GENERATOR.nextId(), method,
                 params == null ? null : RawJson.of(params));
     }
 
     public static JsonRpcRequest newRequest(String method) {
-        return new JsonRpcRequest(SnowflakeId.generateId(), method, null);
+        return new JsonRpcRequest(JsonRpc.DEFAULT_ID_GENERATOR.nextId(), method, null);
     }
 }
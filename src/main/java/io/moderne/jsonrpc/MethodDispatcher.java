@@ -0,0 +1,48 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+import io.moderne.jsonrpc.formatter.MessageFormatter;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * What {@link JsonRpc} dispatches a request to: a {@link JsonRpcMethod}, or a
+ * {@link ServiceMethod} bound with {@link JsonRpc#bindService(Object)}.
+ */
+interface MethodDispatcher {
+
+    @Nullable
+    Object convertAndHandle(@Nullable RawJson params, MessageFormatter formatter) throws Exception;
+
+    /**
+     * @see JsonRpcMethod#interruptOnCancel()
+     */
+    boolean interruptOnCancel();
+
+    static MethodDispatcher of(JsonRpcMethod<?> method) {
+        return new MethodDispatcher() {
+            @Override
+            public @Nullable Object convertAndHandle(@Nullable RawJson params, MessageFormatter formatter) throws Exception {
+                return method.convertAndHandle(params, formatter);
+            }
+
+            @Override
+            public boolean interruptOnCancel() {
+                return method.interruptOnCancel();
+            }
+        };
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+/**
+ * How {@link JsonRpc} dispatches inbound requests for one method. See
+ * {@link JsonRpc#rpc(String, JsonRpcMethod, MethodOptions)}.
+ */
+public class MethodOptions {
+    private int maxConcurrency = Integer.MAX_VALUE;
+    private int queueSize = Integer.MAX_VALUE;
+
+    /**
+     * Requests run one at a time, in the order they arrived.
+     */
+    public static MethodOptions sequential() {
+        return new MethodOptions().maxConcurrency(1);
+    }
+
+    /**
+     * At most this many requests for the method run at once; the rest queue
+     * for a slot, so a flood of one method can't take every dispatch thread.
+     */
+    public MethodOptions maxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    /**
+     * At most this many requests wait for a slot. Beyond that, requests are
+     * answered right away with {@link JsonRpcError#overloaded}.
+     */
+    public MethodOptions queueSize(int queueSize) {
+        if (queueSize < 0) {
+            throw new IllegalArgumentException("queueSize must not be negative");
+        }
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+}
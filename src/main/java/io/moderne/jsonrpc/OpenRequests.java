@@ -0,0 +1,162 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The requests a {@link JsonRpc} has sent and is awaiting responses for, keyed
+ * by request id.
+ * <p>
+ * Numeric ids, which is what {@link RequestIdGenerator#sequential()} hands out,
+ * live in a ring indexed by the low bits of the id. With sequential ids the
+ * ring behaves like a sliding window over the requests in flight, so
+ * correlating a response is an array load and a {@code long} comparison: no
+ * hashing and no boxed key. Whatever doesn't fit in the ring (string ids, or a
+ * numeric id whose slot is still held by a request a full ring older) goes to
+ * an overflow map.
+ * <p>
+ * Like the map it stands in for, putting an id that is already open replaces
+ * its future, so an id is only ever held in one place.
+ * <p>
+ * Numeric ids match by value regardless of their boxed type, since a
+ * {@code Long} id we sent comes back from the parser as an {@code Integer}
+ * whenever it fits one.
+ */
+final class OpenRequests {
+    private static final int RING_SIZE = 1 << 12;
+    private static final int MASK = RING_SIZE - 1;
+
+    private final AtomicReferenceArray<Slot> ring = new AtomicReferenceArray<>(RING_SIZE);
+    private final AtomicInteger ringCount = new AtomicInteger();
+    private final Map<Object, CompletableFuture<JsonRpcSuccess>> overflow = new ConcurrentHashMap<>();
+
+    void put(Object id, CompletableFuture<JsonRpcSuccess> future) {
+        if (isNumeric(id)) {
+            long key = ((Number) id).longValue();
+            int index = index(key);
+            Slot replacement = new Slot(key, future);
+            while (true) {
+                Slot slot = ring.get(index);
+                if (slot == null) {
+                    if (ring.compareAndSet(index, null, replacement)) {
+                        ringCount.incrementAndGet();
+                        // Put while the slot was held by an older id.
+                        overflow.remove(key);
+                        return;
+                    }
+                } else if (slot.id == key) {
+                    if (ring.compareAndSet(index, slot, replacement)) {
+                        return;
+                    }
+                } else {
+                    overflow.put(key, future);
+                    return;
+                }
+            }
+        } else {
+            overflow.put(id, future);
+        }
+    }
+
+    @Nullable
+    CompletableFuture<JsonRpcSuccess> remove(Object id) {
+        if (isNumeric(id)) {
+            long key = ((Number) id).longValue();
+            int index = index(key);
+            Slot slot = ring.get(index);
+            if (slot != null && slot.id == key && ring.compareAndSet(index, slot, null)) {
+                ringCount.decrementAndGet();
+                return slot.future;
+            }
+            return overflow.remove(key);
+        }
+        return overflow.remove(id);
+    }
+
+    /**
+     * Remove the entry for {@code id} only if it is still {@code future}.
+     */
+    boolean remove(Object id, CompletableFuture<JsonRpcSuccess> future) {
+        if (isNumeric(id)) {
+            long key = ((Number) id).longValue();
+            int index = index(key);
+            Slot slot = ring.get(index);
+            if (slot != null && slot.id == key && slot.future == future &&
+                ring.compareAndSet(index, slot, null)) {
+                ringCount.decrementAndGet();
+                return true;
+            }
+            return overflow.remove(key, future);
+        }
+        return overflow.remove(id, future);
+    }
+
+    boolean isEmpty() {
+        return ringCount.get() == 0 && overflow.isEmpty();
+    }
+
+    /**
+     * @return a snapshot of the open requests' futures.
+     */
+    List<CompletableFuture<JsonRpcSuccess>> values() {
+        List<CompletableFuture<JsonRpcSuccess>> values = new ArrayList<>(overflow.values());
+        if (ringCount.get() > 0) {
+            for (int i = 0; i < RING_SIZE; i++) {
+                Slot slot = ring.get(i);
+                if (slot != null) {
+                    values.add(slot.future);
+                }
+            }
+        }
+        return values;
+    }
+
+    void clear() {
+        for (int i = 0; i < RING_SIZE; i++) {
+            if (ring.getAndSet(i, null) != null) {
+                ringCount.decrementAndGet();
+            }
+        }
+        overflow.clear();
+    }
+
+    private static boolean isNumeric(Object id) {
+        return id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte;
+    }
+
+    private static int index(long id) {
+        return (int) id & MASK;
+    }
+
+    private static final class Slot {
+        final long id;
+        final CompletableFuture<JsonRpcSuccess> future;
+
+        Slot(long id, CompletableFuture<JsonRpcSuccess> future) {
+            this.id = id;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+import io.moderne.jsonrpc.formatter.MessageFormatter;
+import io.moderne.jsonrpc.formatter.ParamsReader;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.IntConsumer;
+
+/**
+ * The elements of a list result as the peer streams them in
+ * {@code $/progress} partial results. See {@link JsonRpc#sendForPartialResults}.
+ * <p>
+ * Iterating blocks until the next element arrives, and ends once the response
+ * has. A failed response is thrown from {@link #hasNext()} as a
+ * {@link CompletionException}. Closing before the end cancels the request.
+ */
+public final class PartialResults<T> implements Iterator<T>, AutoCloseable {
+    /**
+     * How many partial results the peer may send ahead of those iterated,
+     * and so at most how many are held, if the peer keeps to it.
+     */
+    static final int WINDOW = 64;
+
+    private static final Object END = new Object();
+
+    /**
+     * The {@code params} of each partial result, decoded only as they are
+     * iterated, followed by {@link #END} once the response is in. Bounded by
+     * the {@link #WINDOW} the peer keeps to, not by the queue itself, as the
+     * reader loop must never wait on a slow iterator: that would hold up
+     * every other response and request on the connection. A peer that
+     * ignores the window can fill it with no more than the whole result.
+     */
+    private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+
+    private final Class<T[]> arrayType;
+    private final ParamsReader valueReader;
+
+    /**
+     * Tells the peer how many more partial results it may send.
+     */
+    private final IntConsumer acknowledge;
+    private int unacknowledged;
+
+    private volatile boolean closed;
+    private @Nullable CompletableFuture<JsonRpcSuccess> response;
+
+    private T @Nullable [] chunk;
+    private int next;
+    private boolean done;
+
+    @SuppressWarnings("unchecked")
+    PartialResults(Class<T> elementType, MessageFormatter formatter, IntConsumer acknowledge) {
+        this.arrayType = (Class<T[]>) Array.newInstance(elementType, 0).getClass();
+        this.valueReader = formatter.paramsReader(new String[]{"value"}, new Type[]{arrayType});
+        this.acknowledge = acknowledge;
+    }
+
+    void attach(CompletableFuture<JsonRpcSuccess> response) {
+        this.response = response;
+        response.whenComplete((success, t) -> received.offer(END));
+    }
+
+    /**
+     * Called on the reader loop, so partial results queue up in the order
+     * they were sent, ahead of the response.
+     */
+    void add(RawJson progressParams) {
+        if (!closed) {
+            received.offer(progressParams);
+        }
+    }
+
+    /**
+     * @return the response, completed once every partial result has been sent.
+     */
+    public CompletableFuture<JsonRpcSuccess> getResponse() {
+        assert response != null;
+        return response;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        while (chunk == null || next == chunk.length) {
+            if (done) {
+                return false;
+            }
+            Object polled = received.poll();
+            if (polled == null) {
+                polled = getResponse().isDone() ? END : take();
+            }
+            next = 0;
+            if (polled == END) {
+                done = true;
+                // A peer that doesn't stream partial results sends them all
+                // in the response instead.
+                chunk = getResponse().join().getResult(arrayType);
+            } else {
+                chunk = (T[]) valueReader.read((RawJson) polled)[0];
+                // In batches, so as not to answer every partial result with
+                // a message of its own.
+                if (++unacknowledged == WINDOW / 2) {
+                    acknowledge.accept(unacknowledged);
+                    unacknowledged = 0;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        assert chunk != null;
+        return chunk[next++];
+    }
+
+    private Object take() {
+        try {
+            return received.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Stop iterating. A request still open is cancelled, and partial results
+     * still to come are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        getResponse().cancel(true);
+        received.clear();
+    }
+}
@@ -33,7 +33,9 @@ import java.lang.reflect.Type;
  *       through whatever the {@link MessageFormatter} uses on the wire), or</li>
  *   <li>a parser-format-specific buffer (inbound — produced by the formatter
  *       during {@code deserialize}; converted lazily to a typed POJO when the
- *       consumer asks via {@link #as(MessageFormatter, Class)}), or</li>
+ *       consumer asks via {@link #as(MessageFormatter, Class)}). Depending on
+ *       the formatter that is tokens captured from the parser, or a slice of
+ *       the received frame itself, or</li>
  *   <li>{@code null}.</li>
  * </ul>
  * Keeps Jackson types out of the public ABI: consumers see only library
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Produces the ids of requests created by {@link JsonRpc#newRequest}. Install
+ * one per connection with {@link JsonRpc#idGenerator(RequestIdGenerator)}.
+ */
+@FunctionalInterface
+public interface RequestIdGenerator {
+
+    /**
+     * @return an id not shared by any other request still awaiting its
+     * response. Stay at or below 2<sup>53</sup> when the peer may be a
+     * JavaScript process, which can't represent larger integers exactly.
+     */
+    long nextId();
+
+    /**
+     * @return a generator counting up from 1. The default is one of these,
+     * shared with {@link JsonRpcRequest#newRequest}.
+     */
+    static RequestIdGenerator sequential() {
+        AtomicLong next = new AtomicLong();
+        return next::incrementAndGet;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public method of a service object as a JSON-RPC method, to be
+ * registered by {@link JsonRpc#bindService(Object)}.
+ * <p>
+ * A method with a single parameter of a structured type (a POJO, map,
+ * collection, or array) receives the whole {@code params} value, like a
+ * {@link JsonRpcMethod}. Otherwise positional {@code params} bind to the
+ * parameters in order, and named {@code params} bind by parameter name, which
+ * requires compiling the service with {@code -parameters}.
+ * <p>
+ * A {@code void} method responds with a {@code null} result. A long-running
+ * method can poll {@link CancellationToken#current()} to stop early when the
+ * peer cancels the request.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Rpc {
+    /**
+     * @return the JSON-RPC method name; the Java method name when empty.
+     */
+    String value() default "";
+
+    /**
+     * @return whether a {@code $/cancelRequest} from the peer should also
+     * interrupt the thread running the method.
+     * @see JsonRpcMethod#interruptOnCancel()
+     */
+    boolean interruptOnCancel() default false;
+}
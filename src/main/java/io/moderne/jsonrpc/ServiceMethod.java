@@ -0,0 +1,278 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+import io.moderne.jsonrpc.formatter.MessageFormatter;
+import io.moderne.jsonrpc.formatter.ParamsReader;
+import io.moderne.jsonrpc.formatter.ValueReader;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+
+/**
+ * A {@link Rpc}-annotated method of a service object bound with
+ * {@link JsonRpc#bindService(Object)}.
+ * <p>
+ * Everything reflective happens once, at bind time: the parameter readers are
+ * resolved by the formatter, and the call itself goes through a lambda spun by
+ * {@link LambdaMetafactory}, so dispatch costs the same as calling the method
+ * from hand-written code. Methods the metafactory can't target (more than
+ * {@value #MAX_SPUN_ARITY} parameters, or a class this library can't access)
+ * fall back to a spreading {@link MethodHandle}.
+ */
+final class ServiceMethod implements MethodDispatcher {
+    private static final int MAX_SPUN_ARITY = 3;
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final Invoker invoker;
+    private final Class<?>[] parameterTypes;
+    private final boolean returnsVoid;
+    private final boolean interruptOnCancel;
+
+    private final @Nullable ValueReader<Object> wholeParams;
+    private final @Nullable ParamsReader paramsReader;
+
+    ServiceMethod(Object service, Method method, MessageFormatter formatter) {
+        this.parameterTypes = method.getParameterTypes();
+        this.returnsVoid = method.getReturnType() == void.class;
+        Rpc rpc = method.getAnnotation(Rpc.class);
+        this.interruptOnCancel = rpc != null && rpc.interruptOnCancel();
+        this.invoker = invoker(service, method);
+
+        Type[] types = method.getGenericParameterTypes();
+        if (types.length == 1 && !isScalar(parameterTypes[0])) {
+            // Like a JsonRpcMethod, a single structured parameter receives
+            // the whole params value.
+            this.wholeParams = formatter.valueReader(types[0]);
+            this.paramsReader = null;
+        } else if (types.length > 0) {
+            Parameter[] parameters = method.getParameters();
+            String[] names = new String[parameters.length];
+            for (int i = 0; i < parameters.length; i++) {
+                names[i] = parameters[i].getName();
+            }
+            this.wholeParams = null;
+            this.paramsReader = formatter.paramsReader(names, types);
+        } else {
+            this.wholeParams = null;
+            this.paramsReader = null;
+        }
+    }
+
+    @Override
+    public @Nullable Object convertAndHandle(@Nullable RawJson params, MessageFormatter formatter) throws Exception {
+        Object[] args;
+        if (wholeParams != null) {
+            args = new Object[]{params == null ? null : wholeParams.read(params)};
+        } else if (paramsReader != null) {
+            args = paramsReader.read(params);
+        } else {
+            args = NO_ARGS;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == null && parameterTypes[i].isPrimitive()) {
+                args[i] = defaultValue(parameterTypes[i]);
+            }
+        }
+
+        Object result;
+        try {
+            result = invoker.invoke(args);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+        // Respond to a void method with a null result rather than the error
+        // a handler returning null gets.
+        return returnsVoid ? RawJson.of(null) : result;
+    }
+
+    @Override
+    public boolean interruptOnCancel() {
+        return interruptOnCancel;
+    }
+
+    static boolean isScalar(Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || type == String.class || type == Character.class ||
+               type == Boolean.class || Number.class.isAssignableFrom(type);
+    }
+
+    static Object defaultValue(Class<?> primitive) {
+        if (primitive == boolean.class) {
+            return false;
+        } else if (primitive == char.class) {
+            return '\0';
+        } else if (primitive == byte.class) {
+            return (byte) 0;
+        } else if (primitive == short.class) {
+            return (short) 0;
+        } else if (primitive == int.class) {
+            return 0;
+        } else if (primitive == long.class) {
+            return 0L;
+        } else if (primitive == float.class) {
+            return 0f;
+        }
+        return 0d;
+    }
+
+    interface Invoker {
+        @Nullable
+        Object invoke(Object[] args) throws Throwable;
+    }
+
+    // Erased shapes for the metafactory to implement. The service instance is
+    // captured, so a spun lambda calls straight into one target method.
+
+    interface Call0 {
+        Object call();
+    }
+
+    interface Call1 {
+        Object call(Object a);
+    }
+
+    interface Call2 {
+        Object call(Object a, Object b);
+    }
+
+    interface Call3 {
+        Object call(Object a, Object b, Object c);
+    }
+
+    interface Run0 {
+        void run();
+    }
+
+    interface Run1 {
+        void run(Object a);
+    }
+
+    interface Run2 {
+        void run(Object a, Object b);
+    }
+
+    interface Run3 {
+        void run(Object a, Object b, Object c);
+    }
+
+    private static final Class<?>[] CALL = {Call0.class, Call1.class, Call2.class, Call3.class};
+    private static final Class<?>[] RUN = {Run0.class, Run1.class, Run2.class, Run3.class};
+
+    private static Invoker invoker(Object service, Method method) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle target;
+        try {
+            target = lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            method.setAccessible(true);
+            try {
+                target = lookup.unreflect(method);
+            } catch (IllegalAccessException e2) {
+                throw new IllegalArgumentException("Cannot access " + method, e2);
+            }
+        }
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+
+        int arity = method.getParameterCount();
+        if (arity <= MAX_SPUN_ARITY) {
+            try {
+                return spin(lookup, target, service, method, isStatic, arity);
+            } catch (Throwable ignored) {
+                // Typically a class the metafactory's generated class can't
+                // see or access; the method handle below still can.
+            }
+        }
+
+        MethodHandle spread = (isStatic ? target : target.bindTo(service))
+                .asSpreader(Object[].class, arity)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return spread::invokeExact;
+    }
+
+    private static Invoker spin(MethodHandles.Lookup lookup, MethodHandle target, Object service,
+                                Method method, boolean isStatic, int arity) throws Throwable {
+        boolean returnsVoid = method.getReturnType() == void.class;
+        Class<?> shape = (returnsVoid ? RUN : CALL)[arity];
+        String name = returnsVoid ? "run" : "call";
+
+        MethodType erased = MethodType.genericMethodType(arity);
+        MethodType instantiated = MethodType.methodType(method.getReturnType(), method.getParameterTypes()).wrap();
+        if (returnsVoid) {
+            erased = erased.changeReturnType(void.class);
+            instantiated = instantiated.changeReturnType(void.class);
+        }
+        MethodType factoryType = isStatic ?
+                MethodType.methodType(shape) :
+                MethodType.methodType(shape, method.getDeclaringClass());
+
+        CallSite site = LambdaMetafactory.metafactory(lookup, name, factoryType, erased, target, instantiated);
+        Object fn = isStatic ? site.getTarget().invoke() : site.getTarget().invoke(service);
+
+        switch (arity) {
+            case 0:
+                if (returnsVoid) {
+                    Run0 run = (Run0) fn;
+                    return args -> {
+                        run.run();
+                        return null;
+                    };
+                }
+                Call0 call0 = (Call0) fn;
+                return args -> call0.call();
+            case 1:
+                if (returnsVoid) {
+                    Run1 run = (Run1) fn;
+                    return args -> {
+                        run.run(args[0]);
+                        return null;
+                    };
+                }
+                Call1 call1 = (Call1) fn;
+                return args -> call1.call(args[0]);
+            case 2:
+                if (returnsVoid) {
+                    Run2 run = (Run2) fn;
+                    return args -> {
+                        run.run(args[0], args[1]);
+                        return null;
+                    };
+                }
+                Call2 call2 = (Call2) fn;
+                return args -> call2.call(args[0], args[1]);
+            default:
+                if (returnsVoid) {
+                    Run3 run = (Run3) fn;
+                    return args -> {
+                        run.run(args[0], args[1], args[2]);
+                        return null;
+                    };
+                }
+                Call3 call3 = (Call3) fn;
+                return args -> call3.call(args[0], args[1], args[2]);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+import io.moderne.jsonrpc.formatter.MessageFormatter;
+import io.moderne.jsonrpc.formatter.ValueReader;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Backs the proxies returned by {@link JsonRpc#proxy(Class)}. Each interface
+ * method is resolved to a {@link Call} when the proxy is created, so a call
+ * through the proxy builds the request and converts the response without any
+ * further reflection or type resolution. Default methods are resolved to a
+ * {@link MethodHandle} that runs them on the proxy.
+ */
+final class ServiceProxy implements InvocationHandler {
+    private final Class<?> api;
+    private final Map<Method, Call> calls = new HashMap<>();
+    private final Map<Method, MethodHandle> defaults = new HashMap<>();
+
+    ServiceProxy(JsonRpc jsonRpc, Class<?> api, MessageFormatter formatter) {
+        this.api = api;
+        for (Method method : api.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers())) {
+                calls.put(method, new Call(jsonRpc, method, formatter));
+            } else if (method.isDefault()) {
+                MethodHandle handle = defaultMethod(method);
+                if (handle != null) {
+                    defaults.put(method, handle);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a handle invoking the interface's own implementation of a default
+     * method, rather than dispatching back to the proxy. Null when the
+     * interface isn't accessible, and calls fail as for any non-remote method.
+     */
+    private static @Nullable MethodHandle defaultMethod(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup;
+            try {
+                // Java 9+, looked up reflectively since this compiles for Java 8.
+                Method privateLookupIn = MethodHandles.class.getMethod("privateLookupIn",
+                        Class.class, MethodHandles.Lookup.class);
+                lookup = (MethodHandles.Lookup) privateLookupIn.invoke(null, declaringClass, MethodHandles.lookup());
+            } catch (NoSuchMethodException e) {
+                // Java 8 only grants private access through this constructor.
+                Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class
+                        .getDeclaredConstructor(Class.class, int.class);
+                constructor.setAccessible(true);
+                lookup = constructor.newInstance(declaringClass, MethodHandles.Lookup.PRIVATE);
+            }
+            return lookup.unreflectSpecial(method, declaringClass);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public @Nullable Object invoke(Object proxy, Method method, Object @Nullable [] args) throws Throwable {
+        Call call = calls.get(method);
+        if (call != null) {
+            return call.invoke(args);
+        }
+        MethodHandle defaultMethod = defaults.get(method);
+        if (defaultMethod != null) {
+            return defaultMethod.bindTo(proxy).invokeWithArguments(args == null ? new Object[0] : args);
+        }
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return args != null && proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "JsonRpc proxy for " + api.getName();
+            }
+        }
+        throw new UnsupportedOperationException("Only abstract methods of a JSON-RPC proxy are remote: " + method);
+    }
+
+    private enum Returns {
+        /**
+         * A {@link CompletableFuture} or {@link CompletionStage} of the result.
+         */
+        FUTURE,
+
+        /**
+         * Nothing, so the call is sent as a notification.
+         */
+        NOTHING,
+
+        /**
+         * The result itself, blocking the caller until it arrives.
+         */
+        RESULT
+    }
+
+    private static final class Call {
+        private final JsonRpc jsonRpc;
+        private final String name;
+        private final Returns returns;
+        private final boolean wholeParams;
+        private final ValueReader<Object> result;
+        private final @Nullable Object nullResult;
+        private final Class<?>[] exceptionTypes;
+
+        Call(JsonRpc jsonRpc, Method method, MessageFormatter formatter) {
+            this.jsonRpc = jsonRpc;
+            Rpc rpc = method.getAnnotation(Rpc.class);
+            this.name = rpc == null || rpc.value().isEmpty() ? method.getName() : rpc.value();
+
+            Class<?> returnType = method.getReturnType();
+            Type resultType;
+            if (returnType == CompletableFuture.class || returnType == CompletionStage.class) {
+                this.returns = Returns.FUTURE;
+                Type generic = method.getGenericReturnType();
+                resultType = generic instanceof ParameterizedType ?
+                        ((ParameterizedType) generic).getActualTypeArguments()[0] :
+                        Object.class;
+            } else if (returnType == void.class) {
+                this.returns = Returns.NOTHING;
+                resultType = Object.class;
+            } else {
+                this.returns = Returns.RESULT;
+                resultType = method.getGenericReturnType();
+            }
+            this.result = formatter.valueReader(resultType);
+            // A null result can't be unboxed to a primitive return type.
+            this.nullResult = returns == Returns.RESULT && returnType.isPrimitive() ?
+                    ServiceMethod.defaultValue(returnType) : null;
+            this.exceptionTypes = method.getExceptionTypes();
+
+            // Mirror how a bound service takes its params.
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            this.wholeParams = parameterTypes.length == 1 && !ServiceMethod.isScalar(parameterTypes[0]);
+        }
+
+        @Nullable
+        Object invoke(Object @Nullable [] args) throws Throwable {
+            Object params;
+            if (args == null || args.length == 0) {
+                params = null;
+            } else if (wholeParams) {
+                params = args[0];
+            } else {
+                params = Arrays.asList(args);
+            }
+
+            if (returns == Returns.NOTHING) {
+                // A notification has no id, so don't take one from the generator.
+                jsonRpc.notify(new JsonRpcRequest(null, name, params == null ? null : RawJson.of(params)));
+                return null;
+            }
+
+            CompletableFuture<JsonRpcSuccess> response = jsonRpc.send(jsonRpc.newRequest(name, params));
+            CompletableFuture<Object> converted = new CompletableFuture<>();
+            response.whenComplete((success, t) -> {
+                if (t != null) {
+                    converted.completeExceptionally(t);
+                    return;
+                }
+                try {
+                    RawJson value = success.getResult();
+                    Object read = value == null ? null : result.read(value);
+                    converted.complete(read == null ? nullResult : read);
+                } catch (RuntimeException e) {
+                    converted.completeExceptionally(e);
+                }
+            });
+            if (returns == Returns.FUTURE) {
+                // Cancelling the caller's future withdraws the request.
+                converted.whenComplete((value, t) -> {
+                    if (converted.isCancelled()) {
+                        response.cancel(true);
+                    }
+                });
+                return converted;
+            }
+
+            try {
+                return converted.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException || cause instanceof Error || isDeclared(cause)) {
+                    throw cause;
+                }
+                // As join() would, rather than the proxy's
+                // UndeclaredThrowableException.
+                throw new CompletionException(cause);
+            } catch (InterruptedException e) {
+                response.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }
+
+        private boolean isDeclared(Throwable t) {
+            for (Class<?> exceptionType : exceptionTypes) {
+                if (exceptionType.isInstance(t)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
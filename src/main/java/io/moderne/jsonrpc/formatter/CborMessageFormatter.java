@@ -0,0 +1,54 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.formatter;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+
+/**
+ * Encodes messages as <a href="https://cbor.io/">CBOR</a> (RFC 8949), for
+ * peers that have a CBOR library but no Smile support. Strings repeated
+ * within a message are written once and referred back to with the
+ * <a href="http://cbor.schmorp.de/stringref">stringref</a> extension, which
+ * the reading side must understand; Jackson's does.
+ * <p>
+ * A CBOR frame may contain any byte, so it needs a length-prefixed handler,
+ * never {@link io.moderne.jsonrpc.handler.NewLineDelimitedMessageHandler}.
+ * <p>
+ * Requires {@code com.fasterxml.jackson.dataformat:jackson-dataformat-cbor}
+ * on the classpath.
+ */
+public class CborMessageFormatter extends JsonMessageFormatter {
+
+    public CborMessageFormatter() {
+        super(factory());
+    }
+
+    public CborMessageFormatter(com.fasterxml.jackson.databind.Module... modules) {
+        super(factory(), modules);
+    }
+
+    private static CBORFactory factory() {
+        return CBORFactory.builder()
+                .enable(CBORGenerator.Feature.STRINGREF)
+                .build();
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/cbor";
+    }
+}
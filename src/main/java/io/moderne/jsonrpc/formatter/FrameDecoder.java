@@ -0,0 +1,47 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.formatter;
+
+import io.moderne.jsonrpc.JsonRpcMessage;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Deserializes one frame from its bytes as they arrive, so decoding overlaps
+ * with reading and the frame never has to be held whole. See
+ * {@link MessageFormatter#newFrameDecoder()}.
+ */
+public interface FrameDecoder {
+    /**
+     * Decode the next bytes of the frame. They have been consumed by the time
+     * this returns, so the caller may reuse the array.
+     */
+    void feed(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * @return the message, once every byte of the frame has been fed.
+     */
+    JsonRpcMessage finish() throws IOException;
+
+    /**
+     * @return the id of the message, once it has been decoded, so that a frame
+     * that then fails to decode can still be answered with an error for it.
+     */
+    default @Nullable Object getId() {
+        return null;
+    }
+}
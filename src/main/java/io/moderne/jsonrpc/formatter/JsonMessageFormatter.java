@@ -17,15 +17,21 @@ package io.moderne.jsonrpc.formatter;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.cfg.ConstructorDetector;
-import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import io.moderne.jsonrpc.JsonRpcBatch;
 import io.moderne.jsonrpc.JsonRpcError;
 import io.moderne.jsonrpc.JsonRpcMessage;
 import io.moderne.jsonrpc.JsonRpcRequest;
@@ -33,69 +39,357 @@ import io.moderne.jsonrpc.JsonRpcSuccess;
 import io.moderne.jsonrpc.RawJson;
 import org.jspecify.annotations.Nullable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JsonMessageFormatter implements MessageFormatter {
+    private static final int MAX_CACHED_TYPES = 1024;
+
     private final ObjectMapper mapper;
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Only when the mapper is configured by us do we know what bean
+     * serialization of the envelope would produce.
+     */
+    private final boolean writeEnvelopeByHand;
+
+    private boolean retainInput;
 
     public JsonMessageFormatter() {
-        this(JsonMapper.builder()
-                // to be able to construct classes that have @Data and a single field
-                // see https://cowtowncoder.medium.com/jackson-2-12-most-wanted-3-5-246624e2d3d0
-                .constructorDetector(ConstructorDetector.USE_PROPERTIES_BASED)
-                .build()
-                .registerModules(new ParameterNamesModule(), new JavaTimeModule())
-                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
-                .setSerializationInclusion(JsonInclude.Include.NON_NULL));
-        mapper.setVisibility(mapper.getSerializationConfig().getDefaultVisibilityChecker()
-                .withCreatorVisibility(JsonAutoDetect.Visibility.PUBLIC_ONLY)
-                .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
-                .withIsGetterVisibility(JsonAutoDetect.Visibility.NONE)
-                .withFieldVisibility(JsonAutoDetect.Visibility.ANY));
+        this(new JsonFactory());
     }
 
     public JsonMessageFormatter(com.fasterxml.jackson.databind.Module... modules) {
-        this(JsonMapper.builder()
-                .constructorDetector(ConstructorDetector.USE_PROPERTIES_BASED)
-                .build()
+        this(new JsonFactory(), modules);
+    }
+
+    /**
+     * For formats other than JSON that Jackson has a streaming factory for.
+     * The mapper is configured as for JSON, and messages are read and written
+     * with the same streaming envelope code, so only the encoding differs.
+     */
+    protected JsonMessageFormatter(JsonFactory factory, com.fasterxml.jackson.databind.Module... modules) {
+        this.mapper = new ObjectMapper(factory)
+                // to be able to construct classes that have @Data and a single field
+                // see https://cowtowncoder.medium.com/jackson-2-12-most-wanted-3-5-246624e2d3d0
+                .setConstructorDetector(ConstructorDetector.USE_PROPERTIES_BASED)
                 .registerModules(new ParameterNamesModule(), new JavaTimeModule())
                 .registerModules(modules)
                 .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
-                .setSerializationInclusion(JsonInclude.Include.NON_NULL));
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
         mapper.setVisibility(mapper.getSerializationConfig().getDefaultVisibilityChecker()
                 .withCreatorVisibility(JsonAutoDetect.Visibility.PUBLIC_ONLY)
                 .withGetterVisibility(JsonAutoDetect.Visibility.NONE)
                 .withIsGetterVisibility(JsonAutoDetect.Visibility.NONE)
                 .withFieldVisibility(JsonAutoDetect.Visibility.ANY));
+        this.writeEnvelopeByHand = true;
     }
 
+    /**
+     * Messages are serialized with {@code mapper} as a whole, since its
+     * configuration may not match the hand-written envelope.
+     */
     public JsonMessageFormatter(ObjectMapper mapper) {
         this.mapper = mapper;
+        this.writeEnvelopeByHand = false;
+    }
+
+    /**
+     * Keep {@code params} and {@code result} objects and arrays as slices of
+     * the frame they arrived in, rather than tokenizing them into a
+     * {@link TokenBuffer} up front. A slice is only parsed when converted,
+     * and is copied to the output verbatim when sent on, so a payload that is
+     * forwarded or converted once is parsed once (or not at all), with no
+     * intermediate token copy. In exchange each message pins its whole frame.
+     * <p>
+     * Only for JSON, whose values can be cut out of a document as they are.
+     * Configure before the formatter is first used.
+     */
+    public JsonMessageFormatter retainInput(boolean retainInput) {
+        if (retainInput && !JsonFactory.FORMAT_NAME_JSON.equals(mapper.getFactory().getFormatName())) {
+            throw new UnsupportedOperationException("Only JSON input can be retained, not " +
+                                                    mapper.getFactory().getFormatName());
+        }
+        this.retainInput = retainInput;
+        return this;
+    }
+
+    @Override
+    public boolean retainsInput() {
+        return retainInput;
     }
 
     @Override
     public JsonRpcMessage deserialize(InputStream in) throws IOException {
+        if (retainInput) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            for (int read; (read = in.read(chunk)) != -1; ) {
+                content.write(chunk, 0, read);
+            }
+            return deserialize(content.toByteArray(), 0, content.size());
+        }
+        return deserialize(mapper.getFactory().createParser(in), null, 0);
+    }
+
+    @Override
+    public JsonRpcMessage deserialize(byte[] content, int offset, int length) throws IOException {
+        return deserialize(mapper.getFactory().createParser(content, offset, length),
+                retainInput ? content : null, offset);
+    }
+
+    /**
+     * Frames are fed to Jackson's non-blocking parser, and the envelope is
+     * read off it token by token as the bytes arrive. Only the tokens of
+     * {@code params}, {@code result} and {@code error} values are buffered,
+     * straight from the parser, so the frame's bytes are never held whole and
+     * its payload is copied once.
+     */
+    @Override
+    public @Nullable FrameDecoder newFrameDecoder() throws IOException {
+        if (retainInput || !mapper.getFactory().canParseAsync()) {
+            // Slices are cut from the frame's bytes, so they need them whole.
+            return null;
+        }
+        return new IncrementalDecoder(mapper.getFactory().createNonBlockingByteArrayParser());
+    }
+
+    /**
+     * The same envelope {@link #readMessage} reads, as a state machine over
+     * tokens that only become available as the frame is fed.
+     */
+    private final class IncrementalDecoder implements FrameDecoder {
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+
+        /**
+         * The messages of a batch read so far, or {@code null} unless the
+         * frame is one.
+         */
+        private @Nullable List<JsonRpcMessage> batch;
+
+        private @Nullable JsonRpcMessage decoded;
+
+        // The envelope being read.
+        private boolean inMessage;
+        private @Nullable String field;
+        private @Nullable Object id;
+        private @Nullable String method;
+        private @Nullable RawJson params;
+        private @Nullable TokenBuffer error;
+        private @Nullable RawJson result;
+        private boolean haveResultField;
+
+        /**
+         * The value of {@link #field} being buffered, and how deeply the
+         * parser is nested in it.
+         */
+        private @Nullable TokenBuffer value;
+        private int valueDepth;
+
+        /**
+         * How deeply the parser is nested in a value being skipped.
+         */
+        private int skipDepth;
+
+        IncrementalDecoder(JsonParser parser) {
+            this.parser = parser;
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        @Override
+        public void feed(byte[] bytes, int offset, int length) throws IOException {
+            feeder.feedInput(bytes, offset, offset + length);
+            readAvailableTokens();
+        }
+
+        @Override
+        public JsonRpcMessage finish() throws IOException {
+            feeder.endOfInput();
+            readAvailableTokens();
+            parser.close();
+            if (decoded == null) {
+                throw new IOException(inMessage || batch != null ?
+                        "Unexpected end of message" : "Expected JSON object or array");
+            }
+            return decoded;
+        }
+
+        @Override
+        public @Nullable Object getId() {
+            return batch == null ? id : null;
+        }
+
+        private void readAvailableTokens() throws IOException {
+            // NOT_AVAILABLE means every byte fed so far has been consumed.
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (value != null) {
+                    value.copyCurrentEvent(parser);
+                    valueDepth += nesting(token);
+                    if (valueDepth == 0) {
+                        TokenBuffer read = value;
+                        value = null;
+                        valueRead(read, true);
+                    }
+                } else if (skipDepth > 0) {
+                    skipDepth += nesting(token);
+                } else if (inMessage) {
+                    envelopeToken(token);
+                } else if (decoded == null) {
+                    // Anything after the message is ignored, as it is when
+                    // the frame is read whole.
+                    structureToken(token);
+                }
+            }
+        }
+
+        private void structureToken(JsonToken token) throws IOException {
+            if (token == JsonToken.START_OBJECT) {
+                inMessage = true;
+                field = null;
+                id = null;
+                method = null;
+                params = null;
+                error = null;
+                result = null;
+                haveResultField = false;
+            } else if (batch == null && token == JsonToken.START_ARRAY) {
+                batch = new ArrayList<>();
+            } else if (batch != null && token == JsonToken.END_ARRAY) {
+                if (batch.isEmpty()) {
+                    throw new IOException("Empty batch");
+                }
+                decoded = new JsonRpcBatch(batch);
+            } else {
+                throw new IOException(batch == null ?
+                        "Expected JSON object or array" : "Expected JSON object in batch");
+            }
+        }
+
+        private void envelopeToken(JsonToken token) throws IOException {
+            if (token == JsonToken.FIELD_NAME) {
+                field = parser.currentName();
+                return;
+            }
+            if (token == JsonToken.END_OBJECT) {
+                inMessage = false;
+                JsonRpcMessage message = message(id, method, params, error, result);
+                if (batch != null) {
+                    batch.add(message);
+                } else {
+                    decoded = message;
+                }
+                return;
+            }
+            String name = field == null ? "" : field;
+            if ("params".equals(name) || "error".equals(name) || "result".equals(name)) {
+                TokenBuffer buffer = new TokenBuffer(parser);
+                buffer.copyCurrentEvent(parser);
+                if (token.isStructStart()) {
+                    value = buffer;
+                    valueDepth = 1;
+                } else {
+                    valueRead(buffer, false);
+                }
+            } else if (token.isStructStart()) {
+                // Including a non-scalar id or method, which readMessage
+                // doesn't make anything of either.
+                skipDepth = 1;
+            } else if ("id".equals(name)) {
+                id = normalizeId(parser);
+            } else if ("method".equals(name)) {
+                method = parser.getValueAsString();
+            }
+        }
+
+        private void valueRead(TokenBuffer buffer, boolean structured) throws IOException {
+            assert field != null;
+            switch (field) {
+                case "params":
+                    params = RawJson.of(buffer);
+                    break;
+                case "error":
+                    error = buffer;
+                    break;
+                default:
+                    haveResultField = true;
+                    if (structured) {
+                        result = RawJson.of(buffer);
+                    } else {
+                        // The non-blocking parser has no codec to read a
+                        // scalar with, so read it back through the mapper.
+                        JsonParser scalar = buffer.asParser(mapper);
+                        scalar.nextToken();
+                        result = RawJson.of(scalar.readValueAs(Object.class));
+                    }
+                    break;
+            }
+        }
+
+        private int nesting(JsonToken token) {
+            return token.isStructStart() ? 1 : token.isStructEnd() ? -1 : 0;
+        }
+    }
+
+    /**
+     * @param input the bytes {@code parser} reads, starting at
+     *              {@code inputOffset}, when payloads are to be sliced out of
+     *              them rather than captured in {@link TokenBuffer}s.
+     */
+    private JsonRpcMessage deserialize(JsonParser parser, byte @Nullable [] input, int inputOffset) throws IOException {
         // Streaming parser: walk the JSON object once, capture params/result/
         // error structure into TokenBuffers (lazy materialization), and read
         // scalars directly. Avoids the JSON → Map<String,Object> → POJO
         // double-pass the original implementation paid on every message.
-        JsonParser parser = mapper.getFactory().createParser(in);
+        JsonToken first = parser.nextToken();
+        if (first == JsonToken.START_ARRAY) {
+            return readBatch(parser, input, inputOffset);
+        }
+        if (first != JsonToken.START_OBJECT) {
+            throw new IOException("Expected JSON object or array");
+        }
+        return readMessage(parser, input, inputOffset);
+    }
+
+    private JsonRpcBatch readBatch(JsonParser parser, byte @Nullable [] input, int inputOffset) throws IOException {
+        List<JsonRpcMessage> messages = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected JSON object in batch");
+            }
+            messages.add(readMessage(parser, input, inputOffset));
+        }
+        if (messages.isEmpty()) {
+            throw new IOException("Empty batch");
+        }
+        return new JsonRpcBatch(messages);
+    }
 
+    /**
+     * Read one message envelope, with the parser positioned on its
+     * {@code START_OBJECT}.
+     */
+    private JsonRpcMessage readMessage(JsonParser parser, byte @Nullable [] input, int inputOffset) throws IOException {
         Object id = null;
         String method = null;
-        TokenBuffer params = null;
+        RawJson params = null;
         TokenBuffer errorBuffer = null;
         Object resultScalar = null;
-        TokenBuffer resultBuffer = null;
+        RawJson resultValue = null;
         boolean haveResultField = false;
 
-        if (parser.nextToken() != JsonToken.START_OBJECT) {
-            throw new IOException("Expected JSON object");
-        }
-
         while (parser.nextToken() != JsonToken.END_OBJECT) {
             String fieldName = parser.currentName();
             parser.nextToken();
@@ -114,7 +408,7 @@ public class JsonMessageFormatter implements MessageFormatter {
                     method = parser.getValueAsString();
                     break;
                 case "params":
-                    params = captureValue(parser);
+                    params = capturePayload(parser, input, inputOffset);
                     break;
                 case "error":
                     errorBuffer = captureValue(parser);
@@ -123,7 +417,7 @@ public class JsonMessageFormatter implements MessageFormatter {
                     haveResultField = true;
                     JsonToken t = parser.currentToken();
                     if (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY) {
-                        resultBuffer = captureValue(parser);
+                        resultValue = capturePayload(parser, input, inputOffset);
                     } else {
                         // Primitive — read directly without buffering.
                         resultScalar = parser.readValueAs(Object.class);
@@ -135,22 +429,47 @@ public class JsonMessageFormatter implements MessageFormatter {
             }
         }
 
+        RawJson result = null;
+        if (haveResultField) {
+            result = resultValue != null ? resultValue : RawJson.of(resultScalar);
+        }
+        return message(id, method, params, errorBuffer, result);
+    }
+
+    /**
+     * @param result {@code null} when the envelope has no {@code result} field.
+     */
+    private JsonRpcMessage message(@Nullable Object id, @Nullable String method, @Nullable RawJson params,
+                                   @Nullable TokenBuffer errorBuffer, @Nullable RawJson result) {
         if (method != null) {
-            return new JsonRpcRequest(id, method, params == null ? null : RawJson.of(params));
+            return new JsonRpcRequest(id, method, params);
         }
         if (errorBuffer != null) {
             JsonRpcError.Detail detail = convertValue(RawJson.of(errorBuffer), JsonRpcError.Detail.class);
             return new JsonRpcError(id, detail);
         }
-        if (haveResultField) {
-            RawJson result = resultBuffer != null ? RawJson.of(resultBuffer) : RawJson.of(resultScalar);
-            return JsonRpcSuccess.fromPayload(id, result, this);
-        }
         // No method, no error, no result — treat as a success with null result
         // (matches the prior {@code mapper.convertValue} fallback behavior).
-        return JsonRpcSuccess.fromPayload(id, null, this);
+        return JsonRpcSuccess.fromPayload(id, result, this);
     }
 
+    private RawJson capturePayload(JsonParser parser, byte @Nullable [] input, int inputOffset) throws IOException {
+        JsonToken t = parser.currentToken();
+        if (input != null && (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY)) {
+            // Offsets are relative to where the parser started reading.
+            int start = inputOffset + (int) parser.currentTokenLocation().getByteOffset();
+            parser.skipChildren();
+            int end = inputOffset + (int) parser.currentLocation().getByteOffset();
+            return RawJson.of(new JsonSlice(input, start, end - start));
+        }
+        return RawJson.of(captureValue(parser));
+    }
+
+    /**
+     * The captured TokenBuffer copies tokens out of the parser, so it never
+     * refers back to the frame bytes and may safely outlive them — the handler
+     * recycles the frame buffer as soon as {@link #deserialize} returns.
+     */
     private TokenBuffer captureValue(JsonParser parser) throws IOException {
         TokenBuffer buffer = new TokenBuffer(parser);
         buffer.copyCurrentStructure(parser);
@@ -158,10 +477,14 @@ public class JsonMessageFormatter implements MessageFormatter {
     }
 
     private @Nullable Object normalizeId(JsonParser parser) throws IOException {
-        // Match the legacy JsonRpcIdDeserializer contract: int / string / null.
+        // Match the JsonRpcIdDeserializer contract: int (long when it doesn't
+        // fit) / string / null.
         switch (parser.currentToken()) {
             case VALUE_NUMBER_INT:
-                return parser.getIntValue();
+                if (parser.getNumberType() == JsonParser.NumberType.INT) {
+                    return parser.getIntValue();
+                }
+                return parser.getLongValue();
             case VALUE_STRING:
                 return parser.getText();
             case VALUE_NULL:
@@ -177,7 +500,123 @@ public class JsonMessageFormatter implements MessageFormatter {
 
     @Override
     public void serialize(JsonRpcMessage message, OutputStream out) throws IOException {
-        mapper.writeValue(out, message);
+        if (!writeEnvelopeByHand) {
+            writerFor(message.getClass()).writeValue(out, message);
+            return;
+        }
+        // The target is the caller's frame or stream; closing the generator
+        // must only flush it.
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            writeMessage(message, gen);
+        }
+    }
+
+    /**
+     * The mirror image of {@link #readMessage}: the fixed envelope fields are
+     * written directly, in the order and with the null handling bean
+     * serialization of the message classes produces, and databind only sees
+     * the payloads.
+     */
+    private void writeMessage(JsonRpcMessage message, JsonGenerator gen) throws IOException {
+        Class<?> type = message.getClass();
+        if (type == JsonRpcRequest.class) {
+            JsonRpcRequest request = (JsonRpcRequest) message;
+            gen.writeStartObject();
+            gen.writeStringField("jsonrpc", request.getJsonrpc());
+            if (request.getId() != null) {
+                gen.writeFieldName("id");
+                writeId(request.getId(), gen);
+            }
+            gen.writeStringField("method", request.getMethod());
+            if (request.getParams() != null) {
+                gen.writeFieldName("params");
+                writePayload(request.getParams(), gen);
+            }
+            gen.writeEndObject();
+        } else if (type == JsonRpcSuccess.class) {
+            JsonRpcSuccess success = (JsonRpcSuccess) message;
+            gen.writeStartObject();
+            gen.writeStringField("jsonrpc", success.getJsonrpc());
+            if (success.getId() != null) {
+                gen.writeFieldName("id");
+                writeId(success.getId(), gen);
+            }
+            if (success.getResult() != null) {
+                gen.writeFieldName("result");
+                writePayload(success.getResult(), gen);
+            }
+            gen.writeEndObject();
+        } else if (type == JsonRpcError.class) {
+            JsonRpcError error = (JsonRpcError) message;
+            JsonRpcError.Detail detail = error.getError();
+            gen.writeStartObject();
+            gen.writeStringField("jsonrpc", error.getJsonrpc());
+            // Always present, null or not; see JsonRpcError.
+            gen.writeFieldName("id");
+            writeId(error.getId(), gen);
+            if (detail != null) {
+                gen.writeObjectFieldStart("error");
+                gen.writeNumberField("code", detail.getCode());
+                if (detail.getMessage() != null) {
+                    gen.writeStringField("message", detail.getMessage());
+                }
+                if (detail.getData() != null) {
+                    gen.writeStringField("data", detail.getData());
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        } else if (type == JsonRpcBatch.class) {
+            gen.writeStartArray();
+            for (JsonRpcMessage element : ((JsonRpcBatch) message).getMessages()) {
+                writeMessage(element, gen);
+            }
+            gen.writeEndArray();
+        } else {
+            writerFor(type).writeValue(gen, message);
+        }
+    }
+
+    private void writeId(@Nullable Object id, JsonGenerator gen) throws IOException {
+        if (id == null) {
+            gen.writeNull();
+        } else if (id instanceof Integer) {
+            gen.writeNumber((Integer) id);
+        } else if (id instanceof Long) {
+            gen.writeNumber((Long) id);
+        } else if (id instanceof String) {
+            gen.writeString((String) id);
+        } else {
+            writerFor(id.getClass()).writeValue(gen, id);
+        }
+    }
+
+    private void writePayload(RawJson payload, JsonGenerator gen) throws IOException {
+        Object inner = payload.unwrap();
+        if (inner == null) {
+            gen.writeNull();
+        } else if (inner instanceof TokenBuffer) {
+            // Replay what we parsed, without going through a serializer.
+            ((TokenBuffer) inner).serialize(gen);
+        } else if (inner instanceof JsonSlice) {
+            ((JsonSlice) inner).writeTo(gen);
+        } else {
+            writerFor(inner.getClass()).writeValue(gen, inner);
+        }
+    }
+
+    private ObjectWriter writerFor(Class<?> type) {
+        ObjectWriter writer = writers.get(type);
+        if (writer == null) {
+            // Payloads are written into a generator we flush when the whole
+            // message is done.
+            writer = mapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            if (writers.size() < MAX_CACHED_TYPES) {
+                writers.putIfAbsent(type, writer);
+            }
+        }
+        return writer;
     }
 
     @Override
@@ -187,15 +626,162 @@ public class JsonMessageFormatter implements MessageFormatter {
         if (inner == null) {
             return null;
         }
+        ObjectReader reader = readerFor(type);
+        if (inner instanceof JsonSlice) {
+            JsonSlice slice = (JsonSlice) inner;
+            try {
+                return reader.readValue(slice.bytes, slice.offset, slice.length);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to convert JSON to " + type, e);
+            }
+        }
         if (inner instanceof TokenBuffer) {
             try {
                 JsonParser bufferParser = ((TokenBuffer) inner).asParser();
                 bufferParser.nextToken();
-                return mapper.readValue(bufferParser, mapper.getTypeFactory().constructType(type));
+                return reader.readValue(bufferParser);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to convert TokenBuffer to " + type, e);
+            }
+        }
+        return (T) mapper.convertValue(inner, reader.getValueType());
+    }
+
+    @Override
+    public void registerType(Type type) {
+        readerFor(type);
+    }
+
+    /**
+     * Resolving a type and probing the deserializer cache for it is a cost
+     * paid on every conversion otherwise. Creating the reader also fetches
+     * its root deserializer, so a registered type's first message is no
+     * slower than later ones.
+     */
+    private ObjectReader readerFor(Type type) {
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            reader = mapper.readerFor(mapper.getTypeFactory().constructType(type));
+            // Types are normally a small fixed set; don't let anything
+            // generating them on the fly grow the cache without bound.
+            if (readers.size() < MAX_CACHED_TYPES) {
+                readers.putIfAbsent(type, reader);
+            }
+        }
+        return reader;
+    }
+
+    @Override
+    public <T> ValueReader<T> valueReader(Type type) {
+        ObjectReader reader = readerFor(type);
+        return value -> {
+            if (value.unwrap() == null) {
+                return null;
+            }
+            try {
+                return reader.readValue(parserFor(value));
             } catch (IOException e) {
                 throw new RuntimeException("Failed to convert TokenBuffer to " + type, e);
             }
+        };
+    }
+
+    @Override
+    public ParamsReader paramsReader(String[] names, Type[] types) {
+        // Resolve a reader per parameter and the name to index map once, so
+        // binding is a single walk over the params tokens that hands each
+        // value straight to its reader.
+        ObjectReader[] readers = new ObjectReader[types.length];
+        Map<String, Integer> indexByName = new HashMap<>();
+        for (int i = 0; i < types.length; i++) {
+            readers[i] = readerFor(types[i]);
+            indexByName.put(names[i], i);
+        }
+        return params -> {
+            Object[] args = new Object[readers.length];
+            if (params == null || params.unwrap() == null) {
+                return args;
+            }
+            try {
+                JsonParser parser = parserFor(params);
+                if (parser.currentToken() == JsonToken.START_ARRAY) {
+                    for (int i = 0; parser.nextToken() != JsonToken.END_ARRAY; i++) {
+                        if (i < readers.length) {
+                            args[i] = readers[i].readValue(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else if (parser.currentToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() != JsonToken.END_OBJECT) {
+                        Integer i = indexByName.get(parser.currentName());
+                        parser.nextToken();
+                        if (i != null) {
+                            args[i] = readers[i].readValue(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    throw new IllegalArgumentException("Expected params to be an array or object");
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to bind params to " + Arrays.toString(types), e);
+            }
+            return args;
+        };
+    }
+
+    @Override
+    public <T> ValueReader<T> namedParamReader(String name, Type type) {
+        ObjectReader reader = readerFor(type);
+        return params -> {
+            if (params.unwrap() == null) {
+                return null;
+            }
+            try {
+                // Only the top-level fields are walked, up to the one wanted.
+                JsonParser parser = parserFor(params);
+                if (parser.currentToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        boolean wanted = name.equals(parser.currentName());
+                        parser.nextToken();
+                        if (wanted) {
+                            return reader.readValue(parser);
+                        }
+                        parser.skipChildren();
+                    }
+                }
+                return null;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read " + name + " from params", e);
+            }
+        };
+    }
+
+    /**
+     * @return a parser positioned on the first token of {@code value}, which
+     * must not be {@code null}.
+     */
+    private JsonParser parserFor(RawJson value) throws IOException {
+        Object inner = value.unwrap();
+        if (inner instanceof JsonSlice) {
+            JsonSlice slice = (JsonSlice) inner;
+            JsonParser parser = mapper.getFactory().createParser(slice.bytes, slice.offset, slice.length);
+            parser.nextToken();
+            return parser;
+        }
+        TokenBuffer buffer;
+        if (inner instanceof TokenBuffer) {
+            buffer = (TokenBuffer) inner;
+        } else {
+            // A value we constructed ourselves rather than parsed, e.g. a
+            // request handled in-process. Replay it as tokens.
+            buffer = new TokenBuffer(mapper, false);
+            mapper.writeValue(buffer, inner);
         }
-        return (T) mapper.convertValue(inner, mapper.getTypeFactory().constructType(type));
+        JsonParser parser = buffer.asParser();
+        parser.nextToken();
+        return parser;
     }
 }
@@ -19,16 +19,38 @@ import io.moderne.jsonrpc.JsonRpcMessage;
 import io.moderne.jsonrpc.RawJson;
 import org.jspecify.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 
 public interface MessageFormatter {
     JsonRpcMessage deserialize(InputStream in) throws IOException;
 
+    /**
+     * Deserialize a frame the handler already holds in memory, which lets a
+     * formatter parse the array directly. When {@link #retainsInput()}, the
+     * message may keep referring to {@code content}.
+     */
+    default JsonRpcMessage deserialize(byte[] content, int offset, int length) throws IOException {
+        return deserialize(new ByteArrayInputStream(content, offset, length));
+    }
+
+    /**
+     * Start decoding a frame whose bytes will be fed as they are read. Handlers
+     * use this for frames too large to want to buffer whole before decoding.
+     *
+     * @return null when this formatter only deserializes complete frames.
+     */
+    default @Nullable FrameDecoder newFrameDecoder() throws IOException {
+        return null;
+    }
+
     void serialize(JsonRpcMessage message, OutputStream out) throws IOException;
 
     /**
@@ -40,7 +62,82 @@ public interface MessageFormatter {
      */
     <T> @Nullable T convertValue(RawJson value, Type type);
 
+    /**
+     * Prepare to convert values to {@code type}, ahead of the first message
+     * that needs it. {@link io.moderne.jsonrpc.JsonRpc#rpc} registers each
+     * method's params type.
+     */
+    default void registerType(Type type) {
+    }
+
+    /**
+     * @return a reader converting {@link RawJson} values to {@code type}, for
+     * callers that convert to the same type over and over. Implementations
+     * resolve whatever they need for the type once, here.
+     */
+    default <T> ValueReader<T> valueReader(Type type) {
+        return value -> convertValue(value, type);
+    }
+
+    /**
+     * @return a reader binding {@code params} to the arguments of a method
+     * with the given parameter names and types.
+     */
+    default ParamsReader paramsReader(String[] names, Type[] types) {
+        return params -> {
+            Object[] args = new Object[types.length];
+            Object value = params == null ? null : convertValue(params, Object.class);
+            if (value instanceof List) {
+                List<?> positional = (List<?>) value;
+                for (int i = 0; i < args.length && i < positional.size(); i++) {
+                    args[i] = convertValue(RawJson.of(positional.get(i)), types[i]);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> named = (Map<?, ?>) value;
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = convertValue(RawJson.of(named.get(names[i])), types[i]);
+                }
+            } else if (value != null) {
+                throw new IllegalArgumentException("Expected params to be an array or object");
+            }
+            return args;
+        };
+    }
+
+    /**
+     * @return a reader picking the one parameter {@code name} out of named
+     * {@code params}, without binding the rest. It reads {@code null} when
+     * the parameter is missing or the params are positional.
+     */
+    default <T> ValueReader<T> namedParamReader(String name, Type type) {
+        return params -> {
+            Object value = convertValue(params, Object.class);
+            return value instanceof Map ? convertValue(RawJson.of(((Map<?, ?>) value).get(name)), type) : null;
+        };
+    }
+
+    /**
+     * Whether a message returned by {@link #deserialize(InputStream)} may keep
+     * referring to the bytes it was read from (e.g. a {@link RawJson} that
+     * points into the input rather than holding its own copy). Handlers only
+     * recycle the buffer a frame was read into when this is {@code false}.
+     */
+    default boolean retainsInput() {
+        return false;
+    }
+
     default Charset getEncoding() {
         return StandardCharsets.UTF_8;
     }
+
+    /**
+     * @return the {@code Content-Type} header-delimited handlers advertise
+     * with each frame, or {@code null} for JSON in UTF-8, which is what a
+     * frame without one is taken to be.
+     */
+    default @Nullable String getContentType() {
+        Charset encoding = getEncoding();
+        return StandardCharsets.UTF_8.equals(encoding) ? null :
+                "application/vscode-jsonrpc;charset=" + encoding.name();
+    }
 }
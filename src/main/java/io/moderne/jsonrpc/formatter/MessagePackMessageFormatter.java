@@ -0,0 +1,48 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.formatter;
+
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+/**
+ * Encodes messages as <a href="https://msgpack.org/">MessagePack</a> rather
+ * than JSON text, for peers exchanging large structured payloads where
+ * formatting and parsing text (numbers especially) dominates. Payloads stay
+ * lazily buffered exactly as with {@link JsonMessageFormatter}, since both
+ * share the same streaming envelope code.
+ * <p>
+ * A MessagePack frame may contain any byte, so it needs a length-prefixed
+ * handler ({@link io.moderne.jsonrpc.handler.HeaderDelimitedMessageHandler}
+ * or {@link io.moderne.jsonrpc.handler.HeaderDelimitedChannelMessageHandler}),
+ * never {@link io.moderne.jsonrpc.handler.NewLineDelimitedMessageHandler}.
+ * <p>
+ * Requires {@code org.msgpack:jackson-dataformat-msgpack} on the classpath.
+ */
+public class MessagePackMessageFormatter extends JsonMessageFormatter {
+
+    public MessagePackMessageFormatter() {
+        super(new MessagePackFactory());
+    }
+
+    public MessagePackMessageFormatter(com.fasterxml.jackson.databind.Module... modules) {
+        super(new MessagePackFactory(), modules);
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/msgpack";
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.formatter;
+
+import io.moderne.jsonrpc.RawJson;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Binds JSON-RPC {@code params} to the arguments of a method. See
+ * {@link MessageFormatter#paramsReader}.
+ */
+@FunctionalInterface
+public interface ParamsReader {
+    /**
+     * @return one argument per parameter: positional {@code params} by index,
+     * named {@code params} by name. Parameters without a value are
+     * {@code null}.
+     */
+    @Nullable
+    Object[] read(@Nullable RawJson params);
+}
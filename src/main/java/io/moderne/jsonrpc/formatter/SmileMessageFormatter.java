@@ -0,0 +1,55 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.formatter;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Encodes messages as <a href="https://github.com/FasterXML/smile-format-specification">Smile</a>,
+ * Jackson's binary JSON, for peers under our control. Besides binary numbers,
+ * Smile refers back to field names and short string values already written in
+ * the same message instead of repeating them, which pays off on payloads like
+ * trees whose nodes all carry the same field names.
+ * <p>
+ * A Smile frame may contain any byte, so it needs a length-prefixed handler,
+ * never {@link io.moderne.jsonrpc.handler.NewLineDelimitedMessageHandler}.
+ * <p>
+ * Requires {@code com.fasterxml.jackson.dataformat:jackson-dataformat-smile}
+ * on the classpath.
+ */
+public class SmileMessageFormatter extends JsonMessageFormatter {
+
+    public SmileMessageFormatter() {
+        super(factory());
+    }
+
+    public SmileMessageFormatter(com.fasterxml.jackson.databind.Module... modules) {
+        super(factory(), modules);
+    }
+
+    private static SmileFactory factory() {
+        // Shared names are on by default; shared values are not.
+        return SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/x-jackson-smile";
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.handler;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Delimiter search over byte arrays, eight bytes at a time.
+ */
+final class ByteSearch {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private ByteSearch() {
+    }
+
+    /**
+     * @return the index of the first {@code target} byte in {@code [from, to)},
+     * or -1 if there is none.
+     */
+    static int indexOf(byte[] buf, int from, int to, byte target) {
+        int i = from;
+        if (to - from >= Long.BYTES * 2) {
+            // SWAR: XOR each word with the target repeated in every byte so
+            // matching bytes become zero, then use the classic "has zero byte"
+            // trick. Borrows only ever propagate upward from a real zero byte,
+            // so in little-endian order the lowest flagged byte is exact.
+            // Heap ByteBuffer.getLong compiles down to a single unaligned load.
+            ByteBuffer words = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+            long pattern = (target & 0xFFL) * ONES;
+            for (int last = to - Long.BYTES; i <= last; i += Long.BYTES) {
+                long x = words.getLong(i) ^ pattern;
+                long found = (x - ONES) & ~x & HIGH_BITS;
+                if (found != 0) {
+                    return i + (Long.numberOfTrailingZeros(found) >>> 3);
+                }
+            }
+        }
+        for (; i < to; i++) {
+            if (buf[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.handler;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A growable byte buffer that a formatter serializes a message body into, with
+ * space reserved in front of the body for the framing header. Once the body is
+ * written, {@link #prependHeader(String)} fills in the header immediately
+ * before it so the whole frame is one contiguous slice of {@link #array()}: one
+ * write, no {@code toByteArray()} copy, and no header String.
+ * <p>
+ * Instances are recycled per thread through {@link #acquire()} and
+ * {@link #release()}.
+ */
+final class FrameOutputStream extends OutputStream {
+    /**
+     * Room for the longest header we write: {@code Content-Length} with a
+     * ten-digit length plus a {@code Content-Type} line of up to 96 bytes.
+     */
+    static final int HEADER_RESERVE = 128;
+
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+
+    /**
+     * Buffers grown past this for one large message are not kept for reuse,
+     * so a single multi-megabyte result doesn't stay pinned to the thread.
+     */
+    static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private static final byte[] CONTENT_LENGTH = "Content-Length: ".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Encoded {@code Content-Type} lines by content type. A formatter has
+     * one, so this holds a handful of entries at most.
+     */
+    private static final Map<String, byte[]> CONTENT_TYPE_HEADERS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<FrameOutputStream> RECYCLED = new ThreadLocal<>();
+
+    private byte[] buf;
+    private int count;
+    private int start;
+
+    FrameOutputStream() {
+        this(INITIAL_CAPACITY);
+    }
+
+    FrameOutputStream(int capacity) {
+        this.buf = new byte[Math.max(capacity, HEADER_RESERVE * 2)];
+        reset();
+    }
+
+    /**
+     * @return this thread's recycled buffer, emptied, or a new one if the
+     * thread has none (or is already using it).
+     */
+    static FrameOutputStream acquire() {
+        FrameOutputStream recycled = RECYCLED.get();
+        if (recycled == null) {
+            return new FrameOutputStream();
+        }
+        RECYCLED.set(null);
+        recycled.reset();
+        return recycled;
+    }
+
+    /**
+     * Hand this buffer back for reuse by the current thread. The caller must
+     * not touch it afterward.
+     */
+    void release() {
+        if (buf.length <= MAX_RETAINED_CAPACITY) {
+            RECYCLED.set(this);
+        }
+    }
+
+    void reset() {
+        count = HEADER_RESERVE;
+        start = HEADER_RESERVE;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity - buf.length > 0) {
+            int newCapacity = buf.length << 1;
+            if (newCapacity - minCapacity < 0) {
+                newCapacity = minCapacity;
+            }
+            if (newCapacity < 0) {
+                if (minCapacity < 0) {
+                    throw new OutOfMemoryError();
+                }
+                newCapacity = Integer.MAX_VALUE - 8;
+            }
+            buf = Arrays.copyOf(buf, newCapacity);
+        }
+    }
+
+    /**
+     * Write the vscode-jsonrpc header into the reserved space directly in front
+     * of the body written so far.
+     */
+    void prependHeader(@Nullable String contentType) {
+        int pos = HEADER_RESERVE;
+        buf[--pos] = '\n';
+        buf[--pos] = '\r';
+        if (contentType != null) {
+            byte[] contentTypeHeader = CONTENT_TYPE_HEADERS.computeIfAbsent(contentType, type -> {
+                byte[] header = ("Content-Type: " + type + "\r\n").getBytes(StandardCharsets.US_ASCII);
+                if (header.length > HEADER_RESERVE - 32) {
+                    throw new IllegalArgumentException("Content-Type too long: " + type);
+                }
+                return header;
+            });
+            pos -= contentTypeHeader.length;
+            System.arraycopy(contentTypeHeader, 0, buf, pos, contentTypeHeader.length);
+        }
+        buf[--pos] = '\n';
+        buf[--pos] = '\r';
+        int length = bodyLength();
+        do {
+            buf[--pos] = (byte) ('0' + length % 10);
+            length /= 10;
+        } while (length > 0);
+        pos -= CONTENT_LENGTH.length;
+        System.arraycopy(CONTENT_LENGTH, 0, buf, pos, CONTENT_LENGTH.length);
+        start = pos;
+    }
+
+    int bodyLength() {
+        return count - HEADER_RESERVE;
+    }
+
+    byte[] array() {
+        return buf;
+    }
+
+    /**
+     * @return the offset of the frame in {@link #array()}: the start of the
+     * header once one has been prepended, otherwise the start of the body.
+     */
+    int offset() {
+        return start;
+    }
+
+    /**
+     * @return the length of the frame starting at {@link #offset()}.
+     */
+    int length() {
+        return count - start;
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.handler;
+
+import io.moderne.jsonrpc.JsonRpcMessage;
+import io.moderne.jsonrpc.JsonRpcReceiveException;
+import io.moderne.jsonrpc.formatter.FrameDecoder;
+import io.moderne.jsonrpc.formatter.MessageFormatter;
+import io.moderne.jsonrpc.internal.BufferPool;
+import org.jspecify.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A channel-based variant of {@link HeaderDelimitedMessageHandler}, wire-compatible
+ * with the <a href="https://www.npmjs.com/package/vscode-jsonrpc">vscode-jsonrpc</a>
+ * NPM package.
+ * <p>
+ * Inbound bytes are read in bulk into a reusable {@link ByteBuffer}. Headers are
+ * scanned in place and {@code Content-Length} is parsed directly from the bytes,
+ * so a well-formed frame costs no per-byte stream reads, no regex match and no
+ * String allocation before the body is handed to the formatter as a slice of the
+ * read buffer.
+ * <p>
+ * The channels are expected to be in blocking mode.
+ */
+public class HeaderDelimitedChannelMessageHandler implements MessageHandler {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A read buffer grown beyond this to hold one oversized frame is dropped
+     * back to the default size once that frame has been deserialized, so a
+     * single large message doesn't pin a large buffer for the life of the
+     * connection.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT_TYPE = "content-type".getBytes(StandardCharsets.US_ASCII);
+
+    private final ReadableByteChannel in;
+    private final @Nullable WritableByteChannel out;
+    private final @Nullable WritePipeline writePipeline;
+
+    /**
+     * {@link Channels#newChannel(OutputStream)} writes straight through to the
+     * stream without ever flushing it, so hold on to the stream when we wrapped
+     * it ourselves.
+     */
+    private final @Nullable Flushable flushable;
+
+    /**
+     * Unconsumed inbound bytes are always the region between the buffer's
+     * position and limit.
+     */
+    private ByteBuffer readBuffer;
+
+    public HeaderDelimitedChannelMessageHandler(ReadableByteChannel in, WritableByteChannel out) {
+        this(in, out, null, null);
+    }
+
+    public HeaderDelimitedChannelMessageHandler(InputStream inputStream, OutputStream outputStream) {
+        this(Channels.newChannel(inputStream), Channels.newChannel(outputStream), outputStream, null);
+    }
+
+    /**
+     * Send frames through a {@link WritePipeline}, which writes and flushes them
+     * in batches on its own thread.
+     */
+    public HeaderDelimitedChannelMessageHandler(ReadableByteChannel in, WritePipeline writePipeline) {
+        this(in, null, null, writePipeline);
+    }
+
+    private HeaderDelimitedChannelMessageHandler(ReadableByteChannel in, @Nullable WritableByteChannel out,
+                                                 @Nullable Flushable flushable, @Nullable WritePipeline writePipeline) {
+        this.in = in;
+        this.out = out;
+        this.flushable = flushable;
+        this.writePipeline = writePipeline;
+        this.readBuffer = emptyBuffer(DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public JsonRpcMessage receive(MessageFormatter formatter) throws IOException {
+        int contentLength = readHeaders();
+        if (contentLength > MAX_RETAINED_BUFFER_SIZE) {
+            // Rather than grow the read buffer to hold the whole frame, only
+            // to drop it again, decode it a buffer-full at a time as it
+            // arrives, if the formatter can.
+            FrameDecoder decoder = formatter.newFrameDecoder();
+            if (decoder != null) {
+                return receiveIncrementally(decoder, contentLength);
+            }
+        }
+        readContent(contentLength);
+
+        byte[] content = readBuffer.array();
+        int offset = readBuffer.arrayOffset() + readBuffer.position();
+        readBuffer.position(readBuffer.position() + contentLength);
+        if (formatter.retainsInput()) {
+            // The message will keep pointing into the bytes it was parsed
+            // from, and the read buffer is about to be reused for the next frame.
+            content = Arrays.copyOfRange(content, offset, offset + contentLength);
+            offset = 0;
+        }
+        try {
+            return formatter.deserialize(content, offset, contentLength);
+        } catch (IOException e) {
+            // Same routing as HeaderDelimitedMessageHandler: a frame that fails
+            // to parse is reported back to the peer, never correlated with an
+            // open client request.
+            throw new JsonRpcReceiveException(IdExtractor.extractId(content, offset, contentLength),
+                    JsonRpcReceiveException.invalidRequestDetail(e.getMessage()));
+        } finally {
+            if (readBuffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                replaceReadBuffer(Math.max(DEFAULT_BUFFER_SIZE, readBuffer.remaining()));
+            }
+        }
+    }
+
+    private JsonRpcMessage receiveIncrementally(FrameDecoder decoder, int contentLength) throws IOException {
+        IOException failure = null;
+        for (int fed = 0; fed < contentLength; ) {
+            if (!readBuffer.hasRemaining() && !readMore(0)) {
+                throw new EOFException("Stream closed mid-message after " + fed +
+                                       " of " + contentLength + " bytes");
+            }
+            int chunk = Math.min(contentLength - fed, readBuffer.remaining());
+            if (failure == null) {
+                try {
+                    decoder.feed(readBuffer.array(), readBuffer.arrayOffset() + readBuffer.position(), chunk);
+                } catch (IOException e) {
+                    // Keep consuming the frame, so the next receive starts at
+                    // the next frame's headers.
+                    failure = e;
+                }
+            }
+            readBuffer.position(readBuffer.position() + chunk);
+            fed += chunk;
+        }
+        if (failure == null) {
+            try {
+                return decoder.finish();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        // The frame's bytes are gone by now, so unlike a buffered frame, the
+        // id is only known if the decoder got to it.
+        throw new JsonRpcReceiveException(decoder.getId(),
+                JsonRpcReceiveException.invalidRequestDetail(failure.getMessage()));
+    }
+
+    @Override
+    public ByteBuffer receiveFrame() throws IOException {
+        // Shrinking moves the unconsumed bytes, so it has to wait until the
+        // caller is done with the previous frame, which is now.
+        if (readBuffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            replaceReadBuffer(Math.max(DEFAULT_BUFFER_SIZE, readBuffer.remaining()));
+        }
+        int contentLength = readHeaders();
+        readContent(contentLength);
+        ByteBuffer frame = readBuffer.slice();
+        frame.limit(contentLength);
+        readBuffer.position(readBuffer.position() + contentLength);
+        return frame;
+    }
+
+    private void readContent(int contentLength) throws IOException {
+        while (readBuffer.remaining() < contentLength) {
+            if (!readMore(contentLength)) {
+                // Mid-message EOF — treat as a closed stream rather than a
+                // recoverable parse error, otherwise the loop spins on the
+                // already-closed channel.
+                throw new EOFException("Stream closed mid-message after " + readBuffer.remaining() +
+                                       " of " + contentLength + " bytes");
+            }
+        }
+    }
+
+    /**
+     * Consume header lines up to and including the blank line that ends them.
+     *
+     * @return the value of the {@code Content-Length} header.
+     */
+    private int readHeaders() throws IOException {
+        int contentLength = -1;
+        boolean consumedAny = false;
+        int scanned = 0;
+        while (true) {
+            byte[] buf = readBuffer.array();
+            int lineStart = readBuffer.arrayOffset() + readBuffer.position();
+            int end = readBuffer.arrayOffset() + readBuffer.limit();
+
+            int newline = ByteSearch.indexOf(buf, lineStart + scanned, end, (byte) '\n');
+
+            if (newline < 0) {
+                scanned = end - lineStart;
+                if (scanned == readBuffer.capacity()) {
+                    // A "header line" that fills the whole read buffer is not
+                    // a header. Drop it so the next receive starts fresh.
+                    readBuffer.position(readBuffer.limit());
+                    throw new JsonRpcReceiveException(null, JsonRpcReceiveException.invalidRequestDetail(
+                            "Header line exceeds " + scanned + " bytes"));
+                }
+                if (!readMore(0)) {
+                    if (!consumedAny && !readBuffer.hasRemaining()) {
+                        // EOF before any byte of this frame: peer closed the
+                        // stream between messages.
+                        throw new EOFException("Stream closed");
+                    }
+                    throw new EOFException("Stream closed mid-message while reading headers");
+                }
+                continue;
+            }
+
+            consumedAny = true;
+            scanned = 0;
+            int lineEnd = newline > lineStart && buf[newline - 1] == '\r' ? newline - 1 : newline;
+            readBuffer.position(newline + 1 - readBuffer.arrayOffset());
+
+            if (lineEnd == lineStart) {
+                if (contentLength < 0) {
+                    throw new JsonRpcReceiveException(null, JsonRpcReceiveException.invalidRequestDetail(
+                            "Expected Content-Length header"));
+                }
+                return contentLength;
+            }
+
+            int colon = indexOf(buf, (byte) ':', lineStart, lineEnd);
+            if (colon > 0 && equalsIgnoreCase(buf, lineStart, colon, CONTENT_LENGTH)) {
+                contentLength = parseContentLength(buf, colon + 1, lineEnd);
+            } else if (colon < 0 || !equalsIgnoreCase(buf, lineStart, colon, CONTENT_TYPE)) {
+                // Content-Type carries nothing we act on; anything else is
+                // noise on the wire rather than a vscode-jsonrpc header.
+                throw new JsonRpcReceiveException(null, JsonRpcReceiveException.invalidRequestDetail(
+                        "Expected Content-Length header but received '" +
+                        new String(buf, lineStart, lineEnd - lineStart, StandardCharsets.US_ASCII) + "'"));
+            }
+        }
+    }
+
+    private static int parseContentLength(byte[] buf, int from, int to) throws JsonRpcReceiveException {
+        int i = from;
+        while (i < to && (buf[i] == ' ' || buf[i] == '\t')) {
+            i++;
+        }
+        int digitsStart = i;
+        long value = 0;
+        while (i < to && buf[i] >= '0' && buf[i] <= '9') {
+            value = value * 10 + (buf[i] - '0');
+            if (value > Integer.MAX_VALUE) {
+                break;
+            }
+            i++;
+        }
+        int digitsEnd = i;
+        while (i < to && (buf[i] == ' ' || buf[i] == '\t')) {
+            i++;
+        }
+        if (digitsStart == digitsEnd || i != to || value > Integer.MAX_VALUE) {
+            throw new JsonRpcReceiveException(null, JsonRpcReceiveException.invalidRequestDetail(
+                    "Invalid Content-Length header '" +
+                    new String(buf, from, to - from, StandardCharsets.US_ASCII).trim() + "'"));
+        }
+        return (int) value;
+    }
+
+    /**
+     * Read at least one more byte from the channel into the read buffer, making
+     * room for {@code required} unconsumed bytes if necessary.
+     *
+     * @return {@code false} on end of stream.
+     */
+    private boolean readMore(int required) throws IOException {
+        if (readBuffer.capacity() < required) {
+            replaceReadBuffer(required);
+        } else if (readBuffer.limit() == readBuffer.capacity()) {
+            readBuffer.compact().flip();
+        }
+
+        int position = readBuffer.position();
+        readBuffer.position(readBuffer.limit()).limit(readBuffer.capacity());
+        int read;
+        do {
+            read = in.read(readBuffer);
+        } while (read == 0);
+        readBuffer.limit(readBuffer.position()).position(position);
+        return read > 0;
+    }
+
+    /**
+     * Move the unconsumed bytes into a pooled buffer of at least {@code capacity}
+     * bytes and return the current one to the pool.
+     */
+    private void replaceReadBuffer(int capacity) {
+        ByteBuffer replacement = ByteBuffer.wrap(BufferPool.shared().acquire(capacity));
+        replacement.put(readBuffer).flip();
+        BufferPool.shared().release(readBuffer.array());
+        readBuffer = replacement;
+    }
+
+    @Override
+    public void send(JsonRpcMessage msg, MessageFormatter formatter) {
+        if (writePipeline != null) {
+            FrameOutputStream frame = writePipeline.acquire();
+            try {
+                formatter.serialize(msg, frame);
+            } catch (IOException e) {
+                writePipeline.recycle(frame);
+                throw new UncheckedIOException(e);
+            }
+            frame.prependHeader(formatter.getContentType());
+            writePipeline.enqueue(frame);
+            return;
+        }
+
+        assert out != null;
+        FrameOutputStream frame = FrameOutputStream.acquire();
+        try {
+            formatter.serialize(msg, frame);
+            frame.prependHeader(formatter.getContentType());
+            ByteBuffer buffer = ByteBuffer.wrap(frame.array(), frame.offset(), frame.length());
+            // Synchronize writes so concurrent sends don't interleave frames.
+            synchronized (out) {
+                writeFully(out, buffer);
+                if (flushable != null) {
+                    flushable.flush();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Override
+    public void sendFrame(ByteBuffer body) {
+        if (writePipeline != null) {
+            FrameOutputStream frame = writePipeline.acquire();
+            frame.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+            frame.prependHeader(null);
+            writePipeline.enqueue(frame);
+            return;
+        }
+
+        assert out != null;
+        FrameOutputStream frame = FrameOutputStream.acquire();
+        try {
+            frame.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+            frame.prependHeader(null);
+            ByteBuffer buffer = ByteBuffer.wrap(frame.array(), frame.offset(), frame.length());
+            synchronized (out) {
+                writeFully(out, buffer);
+                if (flushable != null) {
+                    flushable.flush();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static ByteBuffer emptyBuffer(int capacity) {
+        ByteBuffer buffer = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int indexOf(byte[] buf, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param lowerCaseName an ASCII header name, already lower case.
+     */
+    private static boolean equalsIgnoreCase(byte[] buf, int from, int to, byte[] lowerCaseName) {
+        if (to - from != lowerCaseName.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseName.length; i++) {
+            int c = buf[from + i];
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != lowerCaseName[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
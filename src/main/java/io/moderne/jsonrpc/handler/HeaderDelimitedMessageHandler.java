@@ -17,11 +17,13 @@ package io.moderne.jsonrpc.handler;
 
 import io.moderne.jsonrpc.JsonRpcMessage;
 import io.moderne.jsonrpc.JsonRpcReceiveException;
+import io.moderne.jsonrpc.formatter.FrameDecoder;
 import io.moderne.jsonrpc.formatter.MessageFormatter;
+import io.moderne.jsonrpc.internal.BufferPool;
 import org.jspecify.annotations.Nullable;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,8 +36,26 @@ import java.util.regex.Pattern;
 public class HeaderDelimitedMessageHandler implements MessageHandler {
     private static final Pattern CONTENT_LENGTH = Pattern.compile("Content-Length: (\\d+)");
 
+    /**
+     * Frames larger than this are decoded as they are read, when the formatter
+     * can, instead of first being read whole into one buffer. Smaller ones
+     * are cheaper to parse in one go from a pooled buffer.
+     */
+    private static final int INCREMENTAL_DECODE_THRESHOLD = 1024 * 1024;
+
+    /**
+     * How much of a frame decoded as it is read is read at a time.
+     */
+    private static final int INCREMENTAL_DECODE_CHUNK_SIZE = 64 * 1024;
+
     private final InputStream inputStream;
-    private final OutputStream outputStream;
+    private final @Nullable OutputStream outputStream;
+    private final @Nullable WritePipeline writePipeline;
+
+    /**
+     * The pooled buffer behind the last frame handed out by {@link #receiveFrame()}.
+     */
+    private byte @Nullable [] frameBuffer;
 
     /**
      * Formatter stored for backwards compatibility with deprecated methods.
@@ -58,6 +78,19 @@ public class HeaderDelimitedMessageHandler implements MessageHandler {
     }
 
     public HeaderDelimitedMessageHandler(InputStream inputStream, OutputStream outputStream) {
+        this(inputStream, outputStream, null);
+    }
+
+    /**
+     * Send frames through a {@link WritePipeline}, which writes and flushes them
+     * in batches on its own thread.
+     */
+    public HeaderDelimitedMessageHandler(InputStream inputStream, WritePipeline writePipeline) {
+        this(inputStream, null, writePipeline);
+    }
+
+    private HeaderDelimitedMessageHandler(InputStream inputStream, @Nullable OutputStream outputStream,
+                                          @Nullable WritePipeline writePipeline) {
         // Wrap so byte-by-byte header reads (`readLineFromInputStream`) don't
         // hit a syscall per byte. Skip re-wrapping a stream the caller has
         // already buffered — double-buffering wastes a copy with no benefit.
@@ -65,52 +98,32 @@ public class HeaderDelimitedMessageHandler implements MessageHandler {
                 ? inputStream
                 : new BufferedInputStream(inputStream);
         this.outputStream = outputStream;
+        this.writePipeline = writePipeline;
     }
 
     @Override
     public JsonRpcMessage receive(MessageFormatter formatter) throws IOException {
         MessageFormatter effectiveFormatter = this.formatter != null ? this.formatter : formatter;
         byte[] content = null;
+        int length = 0;
         try {
-            // readLineFromInputStream throws EOFException when the peer has closed
-            // the stream cleanly between messages; let that propagate so the reader
-            // loop can exit instead of treating EOF as a malformed message and
-            // spinning at full CPU constructing exceptions for every empty read.
-            String contentLength = readLineFromInputStream();
-            Matcher contentLengthMatcher = CONTENT_LENGTH.matcher(contentLength);
-            if (!contentLengthMatcher.matches()) {
-                throw new JsonRpcReceiveException(null, JsonRpcReceiveException.invalidRequestDetail(
-                        "Expected Content-Length header but received '" + contentLength + "'"));
-            }
-
-            String contentType = readLineFromInputStream();
-            if (!contentType.isEmpty()) {
-                if (!contentType.startsWith("Content-Type")) {
-                    throw new JsonRpcReceiveException(null, JsonRpcReceiveException.invalidRequestDetail(
-                            "Expected Content-Type header but received '" + contentType + "'"));
-                }
-                // now the next line should be an empty line
-                if (!readLineFromInputStream().isEmpty()) {
-                    throw new JsonRpcReceiveException(null,
-                            JsonRpcReceiveException.invalidRequestDetail("Expected empty line after headers"));
+            // readHeaders throws EOFException when the peer has closed the stream
+            // cleanly between messages; let that propagate so the reader loop can
+            // exit instead of treating EOF as a malformed message and spinning at
+            // full CPU constructing exceptions for every empty read.
+            length = readHeaders();
+            if (length > INCREMENTAL_DECODE_THRESHOLD) {
+                FrameDecoder decoder = effectiveFormatter.newFrameDecoder();
+                if (decoder != null) {
+                    return receiveIncrementally(decoder, length);
                 }
             }
+            // Pooled rather than new byte[length] per frame: large payloads would
+            // otherwise be a humongous allocation per message.
+            content = BufferPool.shared().acquire(length);
+            readContent(content, length);
 
-            content = new byte[Integer.parseInt(contentLengthMatcher.group(1))];
-            for (int totalRead = 0; totalRead < content.length; ) {
-                int bytesRead = inputStream.read(content, totalRead, content.length - totalRead);
-                if (bytesRead == -1) {
-                    // Mid-message EOF — treat as a closed stream rather than a
-                    // recoverable parse error, otherwise the loop spins on the
-                    // already-closed pipe.
-                    throw new EOFException("Stream closed mid-message after " + totalRead +
-                            " of " + content.length + " bytes");
-                }
-                totalRead += bytesRead;
-            }
-
-            ByteArrayInputStream bis = new ByteArrayInputStream(content);
-            return effectiveFormatter.deserialize(bis);
+            return effectiveFormatter.deserialize(content, 0, length);
         } catch (EOFException | JsonRpcReceiveException e) {
             throw e;
         } catch (IOException e) {
@@ -119,8 +132,111 @@ public class HeaderDelimitedMessageHandler implements MessageHandler {
             // the peer rather than completing an unrelated open client future
             // (whose id might collide with the extracted id, or trigger the
             // null-id "fail all open requests" branch).
-            throw new JsonRpcReceiveException(IdExtractor.extractId(content),
+            throw new JsonRpcReceiveException(content == null ? null : IdExtractor.extractId(content, 0, length),
                     JsonRpcReceiveException.invalidRequestDetail(e.getMessage()));
+        } finally {
+            if (content != null && !effectiveFormatter.retainsInput()) {
+                BufferPool.shared().release(content);
+            }
+        }
+    }
+
+    @Override
+    public ByteBuffer receiveFrame() throws IOException {
+        // The previous frame is no longer valid once the next is requested.
+        if (frameBuffer != null) {
+            BufferPool.shared().release(frameBuffer);
+            frameBuffer = null;
+        }
+        int length = readHeaders();
+        byte[] content = BufferPool.shared().acquire(length);
+        try {
+            readContent(content, length);
+        } catch (IOException e) {
+            BufferPool.shared().release(content);
+            throw e;
+        }
+        frameBuffer = content;
+        return ByteBuffer.wrap(content, 0, length);
+    }
+
+    /**
+     * Read the frame a chunk at a time, feeding each to the decoder as it arrives.
+     */
+    private JsonRpcMessage receiveIncrementally(FrameDecoder decoder, int length) throws IOException {
+        byte[] chunk = BufferPool.shared().acquire(INCREMENTAL_DECODE_CHUNK_SIZE);
+        IOException failure = null;
+        try {
+            for (int totalRead = 0; totalRead < length; ) {
+                int bytesRead = inputStream.read(chunk, 0, Math.min(chunk.length, length - totalRead));
+                if (bytesRead == -1) {
+                    throw new EOFException("Stream closed mid-message after " + totalRead +
+                            " of " + length + " bytes");
+                }
+                if (failure == null) {
+                    try {
+                        decoder.feed(chunk, 0, bytesRead);
+                    } catch (IOException e) {
+                        // Keep consuming the frame, so the next receive starts
+                        // at the next frame's headers.
+                        failure = e;
+                    }
+                }
+                totalRead += bytesRead;
+            }
+            if (failure == null) {
+                try {
+                    return decoder.finish();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            // The frame's bytes are gone by now, so unlike a buffered frame, the
+            // id is only known if the decoder got to it.
+            throw new JsonRpcReceiveException(decoder.getId(),
+                    JsonRpcReceiveException.invalidRequestDetail(failure.getMessage()));
+        } finally {
+            BufferPool.shared().release(chunk);
+        }
+    }
+
+    /**
+     * @return the Content-Length of the frame whose headers were just consumed.
+     */
+    private int readHeaders() throws IOException {
+        String contentLength = readLineFromInputStream();
+        Matcher contentLengthMatcher = CONTENT_LENGTH.matcher(contentLength);
+        if (!contentLengthMatcher.matches()) {
+            throw new JsonRpcReceiveException(null, JsonRpcReceiveException.invalidRequestDetail(
+                    "Expected Content-Length header but received '" + contentLength + "'"));
+        }
+
+        String contentType = readLineFromInputStream();
+        if (!contentType.isEmpty()) {
+            if (!contentType.startsWith("Content-Type")) {
+                throw new JsonRpcReceiveException(null, JsonRpcReceiveException.invalidRequestDetail(
+                        "Expected Content-Type header but received '" + contentType + "'"));
+            }
+            // now the next line should be an empty line
+            if (!readLineFromInputStream().isEmpty()) {
+                throw new JsonRpcReceiveException(null,
+                        JsonRpcReceiveException.invalidRequestDetail("Expected empty line after headers"));
+            }
+        }
+        return Integer.parseInt(contentLengthMatcher.group(1));
+    }
+
+    private void readContent(byte[] content, int length) throws IOException {
+        for (int totalRead = 0; totalRead < length; ) {
+            int bytesRead = inputStream.read(content, totalRead, length - totalRead);
+            if (bytesRead == -1) {
+                // Mid-message EOF — treat as a closed stream rather than a
+                // recoverable parse error, otherwise the loop spins on the
+                // already-closed pipe.
+                throw new EOFException("Stream closed mid-message after " + totalRead +
+                        " of " + length + " bytes");
+            }
+            totalRead += bytesRead;
         }
     }
 
@@ -147,24 +263,63 @@ public class HeaderDelimitedMessageHandler implements MessageHandler {
     @Override
     public void send(JsonRpcMessage msg, MessageFormatter formatter) {
         MessageFormatter effectiveFormatter = this.formatter != null ? this.formatter : formatter;
+        if (writePipeline != null) {
+            FrameOutputStream frame = writePipeline.acquire();
+            try {
+                effectiveFormatter.serialize(msg, frame);
+            } catch (IOException e) {
+                writePipeline.recycle(frame);
+                throw new UncheckedIOException(e);
+            }
+            frame.prependHeader(effectiveFormatter.getContentType());
+            writePipeline.enqueue(frame);
+            return;
+        }
+
+        assert outputStream != null;
+        // Serialize behind space reserved for the header, then fill the header
+        // in once the length is known: header and body leave in one write of
+        // one recycled buffer, with no intermediate copy of the payload.
+        FrameOutputStream frame = FrameOutputStream.acquire();
         try {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            effectiveFormatter.serialize(msg, bos);
-            byte[] content = bos.toByteArray();
+            effectiveFormatter.serialize(msg, frame);
+            frame.prependHeader(effectiveFormatter.getContentType());
             // Synchronize writes so concurrent sends (e.g. from callback handlers
-            // and the main thread) don't interleave headers and content.
+            // and the main thread) don't interleave frames.
             synchronized (outputStream) {
-                outputStream.write(("Content-Length: " + content.length + "\r\n").getBytes());
-                if (effectiveFormatter.getEncoding() != StandardCharsets.UTF_8) {
-                    outputStream.write(("Content-Type: application/vscode-jsonrpc;charset=" + effectiveFormatter.getEncoding().name() + "\r\n").getBytes());
-                }
-                outputStream.write('\r');
-                outputStream.write('\n');
-                outputStream.write(content);
+                outputStream.write(frame.array(), frame.offset(), frame.length());
+                outputStream.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Override
+    public void sendFrame(ByteBuffer body) {
+        if (writePipeline != null) {
+            FrameOutputStream frame = writePipeline.acquire();
+            frame.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+            frame.prependHeader(null);
+            writePipeline.enqueue(frame);
+            return;
+        }
+
+        assert outputStream != null;
+        FrameOutputStream frame = FrameOutputStream.acquire();
+        try {
+            frame.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+            frame.prependHeader(null);
+            synchronized (outputStream) {
+                outputStream.write(frame.array(), frame.offset(), frame.length());
                 outputStream.flush();
             }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
+        } finally {
+            frame.release();
         }
     }
 }
@@ -36,11 +36,8 @@ final class IdExtractor {
     private IdExtractor() {
     }
 
-    static @Nullable Object extractId(byte @Nullable [] content) {
-        if (content == null) {
-            return null;
-        }
-        try (JsonParser parser = JSON_FACTORY.createParser(content)) {
+    static @Nullable Object extractId(byte[] content, int offset, int length) {
+        try (JsonParser parser = JSON_FACTORY.createParser(content, offset, length)) {
             if (parser.nextToken() != JsonToken.START_OBJECT) {
                 return null;
             }
@@ -50,7 +47,10 @@ final class IdExtractor {
                 if ("id".equals(field)) {
                     switch (parser.currentToken()) {
                         case VALUE_NUMBER_INT:
-                            return parser.getIntValue();
+                            if (parser.getNumberType() == JsonParser.NumberType.INT) {
+                                return parser.getIntValue();
+                            }
+                            return parser.getLongValue();
                         case VALUE_STRING:
                             return parser.getText();
                         default:
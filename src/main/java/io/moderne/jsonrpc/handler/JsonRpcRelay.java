@@ -0,0 +1,472 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.handler;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import io.moderne.jsonrpc.JsonRpcError;
+import io.moderne.jsonrpc.JsonRpcReceiveException;
+import io.moderne.jsonrpc.formatter.JsonMessageFormatter;
+import io.moderne.jsonrpc.formatter.MessageFormatter;
+import io.moderne.jsonrpc.internal.BufferPool;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Forwards JSON-RPC traffic between one client and the workers serving its
+ * methods, without deserializing it. Of each frame only the envelope is
+ * scanned, and only as far as the "id" and "method" fields; params and
+ * results are copied through as the bytes they arrived as.
+ * <p>
+ * Requests are given relay-wide ids on the way out, so that requests from
+ * different peers never collide at the peer they're forwarded to, and their
+ * responses are given their original ids back on the way in. Requests from the
+ * client are routed by method; requests and notifications from a worker go to
+ * the client. Batches are not relayed.
+ * <p>
+ * All handlers must support {@link MessageHandler#receiveFrame()} and
+ * {@link MessageHandler#sendFrame(ByteBuffer)}, and should use JSON on the wire.
+ */
+public class JsonRpcRelay {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String CANCEL_REQUEST = "$/cancelRequest";
+
+    /**
+     * Only used for the error responses the relay makes up itself.
+     */
+    private static final MessageFormatter ERROR_FORMATTER = new JsonMessageFormatter();
+
+    private final Link client;
+    private final Function<String, @Nullable MessageHandler> router;
+    private final Map<MessageHandler, Link> workers = new ConcurrentHashMap<>();
+    private final Map<Long, Forwarded> forwarded = new ConcurrentHashMap<>();
+    private final AtomicLong relayIds = new AtomicLong();
+
+    private volatile boolean shutdown = false;
+
+    /**
+     * @param client The peer whose requests are routed.
+     * @param router Picks the worker to serve a method, or returns null when
+     *               no worker serves it. Each worker is read from as of the
+     *               first request routed to it.
+     */
+    public JsonRpcRelay(MessageHandler client, Function<String, @Nullable MessageHandler> router) {
+        this.client = new Link(client);
+        this.router = router;
+    }
+
+    public JsonRpcRelay bind() {
+        shutdown = false;
+        client.start();
+        return this;
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        client.stop();
+        for (Link worker : workers.values()) {
+            worker.stop();
+        }
+    }
+
+    private void readLoop(Link from) {
+        while (!shutdown) {
+            ByteBuffer frame;
+            try {
+                frame = from.handler.receiveFrame();
+            } catch (JsonRpcReceiveException e) {
+                // Malformed headers: the handler has skipped to the next frame.
+                reply(from, e.toError());
+                continue;
+            } catch (IOException e) {
+                // The peer closed the stream, or the link broke some other
+                // way, e.g. a reset socket. Either way nothing more will come
+                // from it. Unless shutdown() interrupted the read.
+                if (!shutdown) {
+                    closed(from);
+                }
+                return;
+            }
+
+            Envelope envelope = new Envelope();
+            try {
+                relay(from, frame, envelope);
+            } catch (IOException | RuntimeException e) {
+                if (shutdown) {
+                    return;
+                }
+                rejected(from, envelope, e);
+            }
+        }
+    }
+
+    /**
+     * Answer a frame that could not be parsed, or not be delivered, so far as
+     * its id was read, so that no one is left waiting on it forever.
+     */
+    private void rejected(Link from, Envelope envelope, Exception e) {
+        Object id = envelope.id;
+        if (id == null) {
+            return;
+        }
+        Forwarded request = id instanceof Number && envelope.method == null ?
+                forwarded.get(((Number) id).longValue()) : null;
+        if (request != null && request.to == from) {
+            // Most likely the response to a request forwarded to this peer,
+            // which can then not be answered otherwise.
+            if (forwarded.remove(((Number) id).longValue(), request)) {
+                request.from.relayIdsByOriginalId.remove(request.originalKey());
+                reply(request.from, JsonRpcError.internalError(request.originalId, e));
+            }
+        } else if (!envelope.response) {
+            reply(from, e instanceof JsonProcessingException ?
+                    JsonRpcError.parseError(id) :
+                    JsonRpcError.internalError(id, e));
+        }
+    }
+
+    private void reply(Link to, JsonRpcError error) {
+        try {
+            to.handler.send(error, ERROR_FORMATTER);
+        } catch (RuntimeException ignored) {
+            // The link is broken too, which its reader finds out about.
+        }
+    }
+
+    private void relay(Link from, ByteBuffer frame, Envelope envelope) throws IOException {
+        if (!envelope.scan(frame)) {
+            from.handler.send(JsonRpcError.invalidRequest(null, "the relay only forwards single messages"),
+                    ERROR_FORMATTER);
+        } else if (envelope.method == null) {
+            respond(envelope, frame);
+        } else if (envelope.idStart < 0 || envelope.id == null) {
+            notify(from, envelope, frame);
+        } else {
+            request(from, envelope, frame);
+        }
+    }
+
+    private void request(Link from, Envelope envelope, ByteBuffer frame) {
+        assert envelope.method != null && envelope.id != null;
+        Link to = destination(from, envelope.method);
+        if (to == null) {
+            from.handler.send(JsonRpcError.methodNotFound(envelope.id, envelope.method), ERROR_FORMATTER);
+            return;
+        }
+
+        long relayId = relayIds.incrementAndGet();
+        Forwarded request = new Forwarded(from, to, envelope.id, envelope.idBytes(frame));
+        // Registered before the request leaves, since the response can
+        // arrive on another reader before sendFrame returns.
+        forwarded.put(relayId, request);
+        from.relayIdsByOriginalId.put(request.originalKey(), relayId);
+        try {
+            sendWithId(to, frame, envelope.idStart, envelope.idEnd, Long.toString(relayId).getBytes(StandardCharsets.US_ASCII));
+        } catch (RuntimeException e) {
+            if (forwarded.remove(relayId) != null) {
+                from.relayIdsByOriginalId.remove(request.originalKey());
+                from.handler.send(JsonRpcError.internalError(envelope.id, e), ERROR_FORMATTER);
+            }
+        }
+    }
+
+    private void notify(Link from, Envelope envelope, ByteBuffer frame) throws IOException {
+        assert envelope.method != null;
+        if (!CANCEL_REQUEST.equals(envelope.method)) {
+            Link to = destination(from, envelope.method);
+            if (to != null) {
+                to.handler.sendFrame(frame);
+            }
+            return;
+        }
+
+        // A cancellation names the request by the id its sender gave it, which
+        // is not the id the request was forwarded with.
+        Envelope cancelled = Envelope.scanCancelParams(frame);
+        if (cancelled == null || cancelled.id == null) {
+            return;
+        }
+        Long relayId = from.relayIdsByOriginalId.get(Forwarded.key(cancelled.idBytes(frame)));
+        Forwarded request = relayId == null ? null : forwarded.get(relayId);
+        if (request != null) {
+            sendWithId(request.to, frame, cancelled.idStart, cancelled.idEnd,
+                    Long.toString(relayId).getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private void respond(Envelope envelope, ByteBuffer frame) {
+        if (!(envelope.id instanceof Number)) {
+            // Not an answer to anything the relay forwarded, e.g. a peer's
+            // error about a frame it could not parse. There is no one to
+            // correlate it with.
+            return;
+        }
+        Forwarded request = forwarded.remove(((Number) envelope.id).longValue());
+        if (request == null) {
+            return;
+        }
+        request.from.relayIdsByOriginalId.remove(request.originalKey());
+        sendWithId(request.from, frame, envelope.idStart, envelope.idEnd, request.originalIdBytes);
+    }
+
+    private @Nullable Link destination(Link from, String method) {
+        if (from != client) {
+            return client;
+        }
+        MessageHandler worker = router.apply(method);
+        if (worker == null) {
+            return null;
+        }
+        return workers.computeIfAbsent(worker, handler -> {
+            Link link = new Link(handler);
+            link.start();
+            return link;
+        });
+    }
+
+    /**
+     * Send the frame with the bytes of its id value replaced. When the new id
+     * fits in the old one's place it is written over it and padded with
+     * insignificant whitespace, which leaves the frame's length, and all other
+     * bytes, as they were.
+     */
+    private static void sendWithId(Link to, ByteBuffer frame, int idStart, int idEnd, byte[] id) {
+        byte[] array = frame.array();
+        int base = frame.arrayOffset() + frame.position();
+        int span = idEnd - idStart;
+        if (id.length <= span) {
+            System.arraycopy(id, 0, array, base + idStart, id.length);
+            Arrays.fill(array, base + idStart + id.length, base + idEnd, (byte) ' ');
+            to.handler.sendFrame(frame);
+            return;
+        }
+
+        int length = frame.remaining() - span + id.length;
+        byte[] spliced = BufferPool.shared().acquire(length);
+        try {
+            System.arraycopy(array, base, spliced, 0, idStart);
+            System.arraycopy(id, 0, spliced, idStart, id.length);
+            System.arraycopy(array, base + idEnd, spliced, idStart + id.length, frame.remaining() - idEnd);
+            to.handler.sendFrame(ByteBuffer.wrap(spliced, 0, length));
+        } finally {
+            BufferPool.shared().release(spliced);
+        }
+    }
+
+    private void closed(Link link) {
+        if (link == client) {
+            shutdown();
+            return;
+        }
+        workers.remove(link.handler, link);
+        // Nothing more will come back from this worker, so fail whatever is
+        // still waiting on it rather than leave its senders hanging.
+        for (Iterator<Map.Entry<Long, Forwarded>> it = forwarded.entrySet().iterator(); it.hasNext(); ) {
+            Forwarded request = it.next().getValue();
+            if (request.to == link) {
+                it.remove();
+                request.from.relayIdsByOriginalId.remove(request.originalKey());
+                try {
+                    request.from.handler.send(JsonRpcError.internalError(request.originalId,
+                            "worker closed the stream"), ERROR_FORMATTER);
+                } catch (RuntimeException ignored) {
+                }
+            }
+        }
+    }
+
+    private final class Link {
+        private final MessageHandler handler;
+
+        /**
+         * Requests this peer sent, by the raw bytes of the id it gave them.
+         */
+        private final Map<String, Long> relayIdsByOriginalId = new ConcurrentHashMap<>();
+
+        private volatile @Nullable Thread reader;
+
+        Link(MessageHandler handler) {
+            this.handler = handler;
+        }
+
+        void start() {
+            Thread readerThread = new Thread(() -> readLoop(this), "jsonrpc-relay");
+            readerThread.setDaemon(true);
+            reader = readerThread;
+            readerThread.start();
+        }
+
+        void stop() {
+            Thread readerThread = reader;
+            if (readerThread != null && readerThread != Thread.currentThread()) {
+                readerThread.interrupt();
+            }
+        }
+    }
+
+    private static final class Forwarded {
+        final Link from;
+        final Link to;
+        final Object originalId;
+        final byte[] originalIdBytes;
+
+        Forwarded(Link from, Link to, Object originalId, byte[] originalIdBytes) {
+            this.from = from;
+            this.to = to;
+            this.originalId = originalId;
+            this.originalIdBytes = originalIdBytes;
+        }
+
+        String originalKey() {
+            return key(originalIdBytes);
+        }
+
+        /**
+         * Keyed by the id's JSON text, so that {@code 1} and {@code "1"} stay apart.
+         */
+        static String key(byte[] idBytes) {
+            return new String(idBytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * Where a frame's "id" and "method" are, found with a streaming scan that
+     * stops as soon as both are known. Offsets are relative to the frame's
+     * position.
+     */
+    private static final class Envelope {
+        @Nullable String method;
+        @Nullable Object id;
+        int idStart = -1;
+        int idEnd = -1;
+        boolean response;
+
+        byte[] idBytes(ByteBuffer frame) {
+            int base = frame.arrayOffset() + frame.position();
+            return Arrays.copyOfRange(frame.array(), base + idStart, base + idEnd);
+        }
+
+        /**
+         * Fill in what the frame has of the envelope, so far as it parses.
+         *
+         * @return false when the frame is not a single JSON object.
+         */
+        boolean scan(ByteBuffer frame) throws IOException {
+            try (JsonParser parser = parserFor(frame)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return false;
+                }
+                JsonToken token;
+                while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    if ("result".equals(field) || "error".equals(field)) {
+                        response = true;
+                        if (idStart >= 0) {
+                            // The rest is payload, which a response's id
+                            // usually comes before, so it is seldom scanned
+                            // at all.
+                            return true;
+                        }
+                        parser.nextToken();
+                        parser.skipChildren();
+                        continue;
+                    }
+                    JsonToken value = parser.nextToken();
+                    if ("id".equals(field)) {
+                        readId(parser, value);
+                    } else if ("method".equals(field) && value == JsonToken.VALUE_STRING) {
+                        method = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                    if (idStart >= 0 && (method != null || response)) {
+                        // Likewise for a request's params, as jsonrpc, id and
+                        // method usually come first.
+                        return true;
+                    }
+                }
+                return token == JsonToken.END_OBJECT;
+            }
+        }
+
+        /**
+         * @return where the id in a cancellation's params is, or null if it has none.
+         */
+        static @Nullable Envelope scanCancelParams(ByteBuffer frame) throws IOException {
+            try (JsonParser parser = parserFor(frame)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return null;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    if (parser.nextToken() != JsonToken.START_OBJECT || !"params".equals(field)) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String param = parser.currentName();
+                        JsonToken value = parser.nextToken();
+                        if ("id".equals(param)) {
+                            Envelope cancelled = new Envelope();
+                            cancelled.readId(parser, value);
+                            return cancelled.idStart < 0 ? null : cancelled;
+                        }
+                        parser.skipChildren();
+                    }
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private void readId(JsonParser parser, JsonToken value) throws IOException {
+            int start = (int) parser.currentTokenLocation().getByteOffset();
+            switch (value) {
+                case VALUE_NUMBER_INT:
+                    id = parser.getNumberType() == JsonParser.NumberType.INT ?
+                            (Object) parser.getIntValue() : (Object) parser.getLongValue();
+                    break;
+                case VALUE_STRING:
+                    // Reading the text also moves the parser past the closing quote.
+                    id = parser.getText();
+                    break;
+                case VALUE_NULL:
+                    id = null;
+                    break;
+                default:
+                    parser.skipChildren();
+                    return;
+            }
+            idStart = start;
+            idEnd = (int) parser.currentLocation().getByteOffset();
+        }
+
+        private static JsonParser parserFor(ByteBuffer frame) throws IOException {
+            return JSON_FACTORY.createParser(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+        }
+    }
+}
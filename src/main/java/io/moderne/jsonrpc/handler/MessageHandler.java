@@ -16,10 +16,12 @@
 package io.moderne.jsonrpc.handler;
 
 import io.moderne.jsonrpc.JsonRpcMessage;
+import io.moderne.jsonrpc.JsonRpcReceiveException;
 import io.moderne.jsonrpc.formatter.MessageFormatter;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public interface MessageHandler {
 
@@ -31,4 +33,46 @@ public interface MessageHandler {
     JsonRpcMessage receive(MessageFormatter formatter) throws IOException;
 
     void send(JsonRpcMessage msg, MessageFormatter formatter);
+
+    /**
+     * Receive the next frame's body without deserializing it, to relay it
+     * as is or to {@link #decodeFrame decode it} on another thread.
+     *
+     * @return the body, backed by the handler's own buffer and only valid
+     * until the next call to receive.
+     * @throws EOFException when the underlying stream has been closed cleanly
+     *                      between messages.
+     */
+    default ByteBuffer receiveFrame() throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support raw frames");
+    }
+
+    /**
+     * Deserialize a frame body received by {@link #receiveFrame()}, reporting
+     * a body that doesn't parse the way {@link #receive} does.
+     *
+     * @param frame a body the caller owns, which the message may keep
+     *              referring to when the formatter {@link MessageFormatter#retainsInput() retains input}.
+     */
+    default JsonRpcMessage decodeFrame(ByteBuffer frame, MessageFormatter formatter) throws IOException {
+        byte[] content = frame.array();
+        int offset = frame.arrayOffset() + frame.position();
+        try {
+            return formatter.deserialize(content, offset, frame.remaining());
+        } catch (JsonRpcReceiveException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new JsonRpcReceiveException(IdExtractor.extractId(content, offset, frame.remaining()),
+                    JsonRpcReceiveException.invalidRequestDetail(e.getMessage()));
+        }
+    }
+
+    /**
+     * Send a frame body received by {@link #receiveFrame()}, framed as this
+     * handler frames messages. The body is written before this returns, so
+     * its buffer may be reused right after.
+     */
+    default void sendFrame(ByteBuffer frame) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support raw frames");
+    }
 }
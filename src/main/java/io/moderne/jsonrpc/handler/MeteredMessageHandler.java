@@ -24,6 +24,7 @@ import io.moderne.jsonrpc.JsonRpcSuccess;
 import io.moderne.jsonrpc.formatter.MessageFormatter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class MeteredMessageHandler implements MessageHandler {
@@ -73,6 +74,30 @@ public class MeteredMessageHandler implements MessageHandler {
         return msg;
     }
 
+    @Override
+    public ByteBuffer receiveFrame() throws IOException {
+        return delegate.receiveFrame();
+    }
+
+    /**
+     * Frames received whole are timed as they are decoded.
+     */
+    @Override
+    public JsonRpcMessage decodeFrame(ByteBuffer frame, MessageFormatter formatter) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        JsonRpcMessage msg = delegate.decodeFrame(frame, formatter);
+        Timer timer = timerFor(true, msg);
+        if (timer != null) {
+            sample.stop(timer);
+        }
+        return msg;
+    }
+
+    @Override
+    public void sendFrame(ByteBuffer frame) {
+        delegate.sendFrame(frame);
+    }
+
     @Override
     public void send(JsonRpcMessage msg, MessageFormatter formatter) {
         Timer.Sample sample = Timer.start(meterRegistry);
@@ -18,66 +18,212 @@ package io.moderne.jsonrpc.handler;
 import io.moderne.jsonrpc.JsonRpcMessage;
 import io.moderne.jsonrpc.JsonRpcReceiveException;
 import io.moderne.jsonrpc.formatter.MessageFormatter;
+import io.moderne.jsonrpc.internal.BufferPool;
+import org.jspecify.annotations.Nullable;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * This appends each JSON-RPC message with \n. It should only be used with UTF-8 text-based
  * formatters that do not emit new line characters as part of the JSON.
  */
 public class NewLineDelimitedMessageHandler implements MessageHandler {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The largest array the JVM reliably allocates.
+     */
+    private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * A read buffer grown beyond this to hold one very long line is traded back
+     * for a default-sized one once that line has been deserialized.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
     private final InputStream inputStream;
-    private final OutputStream outputStream;
+    private final @Nullable OutputStream outputStream;
+    private final @Nullable WritePipeline writePipeline;
+
+    /**
+     * Bytes read ahead of the current frame are carried over to the next one:
+     * unconsumed input always lies in {@code [start, end)} of this buffer.
+     */
+    private byte[] buffer;
+    private int start;
+    private int end;
 
     public NewLineDelimitedMessageHandler(InputStream inputStream, OutputStream outputStream) {
-        // Same buffering policy as HeaderDelimitedMessageHandler: read-loop is
-        // byte-by-byte until newline; buffer once at construction so we don't
-        // syscall per byte. Skip re-wrapping a pre-buffered stream.
-        this.inputStream = inputStream instanceof BufferedInputStream
-                ? inputStream
-                : new BufferedInputStream(inputStream);
+        this(inputStream, outputStream, null);
+    }
+
+    /**
+     * Send frames through a {@link WritePipeline}, which writes and flushes them
+     * in batches on its own thread.
+     */
+    public NewLineDelimitedMessageHandler(InputStream inputStream, WritePipeline writePipeline) {
+        this(inputStream, null, writePipeline);
+    }
+
+    private NewLineDelimitedMessageHandler(InputStream inputStream, @Nullable OutputStream outputStream,
+                                           @Nullable WritePipeline writePipeline) {
+        // No BufferedInputStream: receive reads in large chunks into its own
+        // buffer, so another layer of buffering would only add a copy.
+        this.inputStream = inputStream;
         this.outputStream = outputStream;
+        this.writePipeline = writePipeline;
+        this.buffer = BufferPool.shared().acquire(DEFAULT_BUFFER_SIZE);
     }
 
     @Override
     public JsonRpcMessage receive(MessageFormatter formatter) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int b = inputStream.read();
-        if (b == -1) {
-            // Stream closed cleanly between messages — let the reader loop
-            // shut down rather than spin treating EOF as a parse failure.
-            throw new EOFException("Stream closed");
-        }
-        boolean foundNewline = false;
-        do {
-            buffer.write(b);
-            if (b == '\n') {
-                foundNewline = true;
-                break;
-            }
-        } while ((b = inputStream.read()) != -1);
-        if (!foundNewline) {
-            // Bytes read but no terminating newline before EOF — peer died
-            // mid-message. Match HeaderDelimitedMessageHandler's mid-message
-            // EOF behavior so the reader loop exits instead of treating
-            // partial bytes as a recoverable parse failure.
-            throw new EOFException("Stream closed mid-message after " + buffer.size() + " bytes");
+        int length = nextFrame();
+        int offset = start - length;
+
+        byte[] content = buffer;
+        if (formatter.retainsInput()) {
+            // The message will keep pointing into the bytes it was parsed
+            // from, and this buffer is about to be reused for the next frame.
+            content = Arrays.copyOfRange(buffer, offset, offset + length);
+            offset = 0;
         }
-        byte[] content = buffer.toByteArray();
         try {
-            return formatter.deserialize(new ByteArrayInputStream(content));
+            return formatter.deserialize(content, offset, length);
         } catch (IOException e) {
             // Parse failure on a complete frame. Surface as JsonRpcReceiveException
             // so JsonRpc.bind() routes the error back to the peer rather than
             // letting it fall through to the generic Throwable catch (which
             // would lose the extracted id and the proper Invalid Request code).
-            throw new JsonRpcReceiveException(IdExtractor.extractId(content),
+            throw new JsonRpcReceiveException(IdExtractor.extractId(content, offset, length),
                     JsonRpcReceiveException.invalidRequestDetail(e.getMessage()));
+        } finally {
+            shrinkBuffer();
+        }
+    }
+
+    /**
+     * The frame excludes its terminating newline.
+     */
+    @Override
+    public ByteBuffer receiveFrame() throws IOException {
+        // The previous frame handed out has been dealt with by now.
+        shrinkBuffer();
+        int length = nextFrame();
+        return ByteBuffer.wrap(buffer, start - length, length - 1);
+    }
+
+    /**
+     * Read up to the end of the next line, and consume it.
+     *
+     * @return the length of the frame, including its newline, which ends
+     * where {@code start} now is.
+     */
+    private int nextFrame() throws IOException {
+        int scanFrom = start;
+        int newline;
+        while ((newline = ByteSearch.indexOf(buffer, scanFrom, end, (byte) '\n')) < 0) {
+            scanFrom = end;
+            if (end == buffer.length) {
+                makeRoom();
+                scanFrom = end;
+            }
+            int read = inputStream.read(buffer, end, buffer.length - end);
+            if (read == -1) {
+                if (start == end) {
+                    // Stream closed cleanly between messages — let the reader
+                    // loop shut down rather than spin treating EOF as a parse
+                    // failure.
+                    throw new EOFException("Stream closed");
+                }
+                // Bytes read but no terminating newline before EOF — peer died
+                // mid-message. Match HeaderDelimitedMessageHandler's mid-message
+                // EOF behavior so the reader loop exits instead of treating
+                // partial bytes as a recoverable parse failure.
+                throw new EOFException("Stream closed mid-message after " + (end - start) + " bytes");
+            }
+            end += read;
+        }
+
+        int length = newline + 1 - start;
+        start = newline + 1;
+        return length;
+    }
+
+    private void shrinkBuffer() {
+        if (buffer.length > MAX_RETAINED_BUFFER_SIZE && end - start <= DEFAULT_BUFFER_SIZE) {
+            replaceBuffer(DEFAULT_BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Free up space at the end of a full buffer, either by moving the partial
+     * frame at {@code start} to the front or, when the frame already fills the
+     * buffer, by trading up to a larger pooled one.
+     */
+    private void makeRoom() {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        } else if (buffer.length >= MAX_BUFFER_SIZE) {
+            throw new OutOfMemoryError("Newline-delimited frame exceeds " + MAX_BUFFER_SIZE + " bytes");
+        } else {
+            // Double, rather than count on the pool rounding up; past its
+            // largest size class it allocates exactly what is asked for, and
+            // growing by a byte would copy the frame again on every read.
+            replaceBuffer(buffer.length > MAX_BUFFER_SIZE / 2 ? MAX_BUFFER_SIZE : buffer.length * 2);
+        }
+    }
+
+    private void replaceBuffer(int minCapacity) {
+        byte[] replacement = BufferPool.shared().acquire(minCapacity);
+        System.arraycopy(buffer, start, replacement, 0, end - start);
+        BufferPool.shared().release(buffer);
+        buffer = replacement;
+        end -= start;
+        start = 0;
+    }
+
+    @Override
+    public void sendFrame(ByteBuffer frame) {
+        if (writePipeline != null) {
+            FrameOutputStream out = writePipeline.acquire();
+            out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            out.write('\n');
+            writePipeline.enqueue(out);
+            return;
+        }
+
+        assert outputStream != null;
+        try {
+            synchronized (outputStream) {
+                outputStream.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+                outputStream.write('\n');
+                outputStream.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
     @Override
     public void send(JsonRpcMessage msg, MessageFormatter formatter) {
+        if (writePipeline != null) {
+            FrameOutputStream frame = writePipeline.acquire();
+            try {
+                formatter.serialize(msg, frame);
+            } catch (IOException e) {
+                writePipeline.recycle(frame);
+                throw new UncheckedIOException(e);
+            }
+            frame.write('\n');
+            writePipeline.enqueue(frame);
+            return;
+        }
+
+        assert outputStream != null;
         try {
             synchronized (outputStream) {
                 formatter.serialize(msg, outputStream);
@@ -23,6 +23,7 @@ import lombok.RequiredArgsConstructor;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
 
 @RequiredArgsConstructor
 public class TraceMessageHandler implements MessageHandler {
@@ -43,6 +44,25 @@ public class TraceMessageHandler implements MessageHandler {
         return message;
     }
 
+    @Override
+    public ByteBuffer receiveFrame() throws IOException {
+        return delegate.receiveFrame();
+    }
+
+    @Override
+    public JsonRpcMessage decodeFrame(ByteBuffer frame, MessageFormatter formatter) throws IOException {
+        JsonRpcMessage message = delegate.decodeFrame(frame, formatter);
+        if (message instanceof JsonRpcResponse) {
+            out.printf("<-(%s)- %s%n", name, message);
+        }
+        return message;
+    }
+
+    @Override
+    public void sendFrame(ByteBuffer frame) {
+        delegate.sendFrame(frame);
+    }
+
     @Override
     public void send(JsonRpcMessage message, MessageFormatter formatter) {
         if (message instanceof JsonRpcRequest) {
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.handler;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An opt-in write path shared by the framing handlers. Instead of every sender
+ * taking the output monitor and flushing its own message, senders serialize
+ * their frame on their own thread and enqueue it on a lock-free queue. A single
+ * writer thread drains whatever has accumulated, writes it, and flushes once per
+ * batch (group commit), so under fan-out load the flush syscall is amortized
+ * across all the frames that queued up behind it.
+ * <p>
+ * Because writes are asynchronous, a transport failure surfaces as an
+ * {@link UncheckedIOException} on the first send after it happened rather than
+ * on the send whose frame was being written.
+ * <p>
+ * The queue itself is unbounded; bound the number of in-flight messages upstream
+ * when producers can outpace the peer.
+ */
+public class WritePipeline implements Closeable {
+    private static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    /**
+     * Written frames are recycled for the next sender, up to this many.
+     */
+    private static final int MAX_RECYCLED_FRAMES = 64;
+
+    private final @Nullable OutputStream outputStream;
+    private final @Nullable WritableByteChannel channel;
+    private final int maxBatchSize;
+
+    private final Queue<FrameOutputStream> queue = new ConcurrentLinkedQueue<>();
+    private final Queue<FrameOutputStream> recycled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger recycledCount = new AtomicInteger();
+
+    private final AtomicLong framesWritten = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile int maxObservedBatchSize;
+
+    private final Thread writer;
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+    private volatile @Nullable IOException failure;
+
+    public WritePipeline(OutputStream outputStream) {
+        this(outputStream, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param maxBatchSize the most frames written between two flushes.
+     */
+    public WritePipeline(OutputStream outputStream, int maxBatchSize) {
+        this(outputStream, null, maxBatchSize);
+    }
+
+    /**
+     * Frames are written to a {@link GatheringByteChannel} with one gathering
+     * write per batch.
+     */
+    public WritePipeline(WritableByteChannel channel) {
+        this(channel, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public WritePipeline(WritableByteChannel channel, int maxBatchSize) {
+        this(null, channel, maxBatchSize);
+    }
+
+    private WritePipeline(@Nullable OutputStream outputStream, @Nullable WritableByteChannel channel, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.outputStream = outputStream;
+        this.channel = channel;
+        this.maxBatchSize = maxBatchSize;
+        this.writer = new Thread(this::writeLoop, "jsonrpc-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @return an empty frame buffer for a sender to serialize into, recycled
+     * from an earlier write when one is available.
+     */
+    FrameOutputStream acquire() {
+        FrameOutputStream frame = recycled.poll();
+        if (frame == null) {
+            return new FrameOutputStream();
+        }
+        recycledCount.decrementAndGet();
+        frame.reset();
+        return frame;
+    }
+
+    /**
+     * Hand a fully serialized frame to the writer thread. Ownership of the
+     * frame passes to the pipeline.
+     */
+    void enqueue(FrameOutputStream frame) {
+        IOException failed = failure;
+        if (failed != null) {
+            throw new UncheckedIOException(failed);
+        }
+        if (closed) {
+            throw new IllegalStateException("Write pipeline is closed");
+        }
+        queue.offer(frame);
+        queueDepth.incrementAndGet();
+        if (closed && queue.remove(frame)) {
+            // close() raced the check above, and the writer may already have
+            // seen an empty queue and exited. Had it taken the frame instead,
+            // it would have written it before looking at the flag again.
+            queueDepth.decrementAndGet();
+            throw new IllegalStateException("Write pipeline is closed");
+        }
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    void recycle(FrameOutputStream frame) {
+        if (frame.array().length > FrameOutputStream.MAX_RETAINED_CAPACITY) {
+            return;
+        }
+        if (recycledCount.incrementAndGet() > MAX_RECYCLED_FRAMES) {
+            recycledCount.decrementAndGet();
+            return;
+        }
+        recycled.offer(frame);
+    }
+
+    private void writeLoop() {
+        FrameOutputStream[] batch = new FrameOutputStream[maxBatchSize];
+        ByteBuffer[] buffers = new ByteBuffer[maxBatchSize];
+        while (true) {
+            int size = 0;
+            FrameOutputStream frame;
+            while (size < maxBatchSize && (frame = queue.poll()) != null) {
+                batch[size++] = frame;
+            }
+
+            if (size == 0) {
+                if (closed) {
+                    return;
+                }
+                // Publish that we're about to park before re-checking the
+                // queue; a sender offers before checking the flag, so one of
+                // the two always sees the other.
+                writerParked = true;
+                if (queue.isEmpty() && !closed) {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+                continue;
+            }
+
+            queueDepth.addAndGet(-size);
+            if (failure == null) {
+                try {
+                    write(batch, buffers, size);
+                    framesWritten.addAndGet(size);
+                    batchesWritten.incrementAndGet();
+                    lastBatchSize = size;
+                    if (size > maxObservedBatchSize) {
+                        maxObservedBatchSize = size;
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                } catch (RuntimeException e) {
+                    failure = new IOException(e);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                recycle(batch[i]);
+                batch[i] = null;
+                buffers[i] = null;
+            }
+        }
+    }
+
+    private void write(FrameOutputStream[] batch, ByteBuffer[] buffers, int size) throws IOException {
+        if (outputStream != null) {
+            for (int i = 0; i < size; i++) {
+                outputStream.write(batch[i].array(), batch[i].offset(), batch[i].length());
+            }
+            outputStream.flush();
+            return;
+        }
+
+        assert channel != null;
+        long remaining = 0;
+        for (int i = 0; i < size; i++) {
+            buffers[i] = ByteBuffer.wrap(batch[i].array(), batch[i].offset(), batch[i].length());
+            remaining += batch[i].length();
+        }
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            int first = 0;
+            while (remaining > 0) {
+                remaining -= gathering.write(buffers, first, size - first);
+                while (first < size && !buffers[first].hasRemaining()) {
+                    first++;
+                }
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                while (buffers[i].hasRemaining()) {
+                    channel.write(buffers[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return frames enqueued by senders and not yet picked up by the writer.
+     */
+    public int getQueueDepth() {
+        return Math.max(0, queueDepth.get());
+    }
+
+    public long getFramesWritten() {
+        return framesWritten.get();
+    }
+
+    /**
+     * @return the number of flushes, i.e. batches, written so far. Together with
+     * {@link #getFramesWritten()} this gives the mean batch size.
+     */
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public int getMaxObservedBatchSize() {
+        return maxObservedBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Stop accepting frames, wait for the writer to drain what was already
+     * enqueued, and stop the writer thread. Does not close the underlying
+     * stream or channel.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IOException failed = failure;
+        if (failed != null) {
+            throw failed;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.internal;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recycles the byte arrays that inbound frame bodies are read into. Large
+ * LST-sized payloads otherwise cost a humongous allocation per message under
+ * G1, and small ones a steady stream of young garbage.
+ * <p>
+ * Buffers come in power-of-two size classes, so a released buffer can serve any
+ * later frame of up to its length. The total bytes held idle in the pool are
+ * capped; a buffer released while the pool is full is left to the garbage
+ * collector.
+ */
+public final class BufferPool {
+    private static final int MIN_CLASS_SHIFT = 12; // 4 KiB
+    private static final int MAX_CLASS_SHIFT = 30; // 1 GiB
+
+    private static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+
+    private static final BufferPool SHARED = new BufferPool(DEFAULT_MAX_POOLED_BYTES);
+
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    private final Queue<byte[]>[] classes = new Queue[MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1];
+
+    BufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * @return the pool shared by every handler in the process.
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return a buffer of at least {@code minCapacity} bytes. Its contents are
+     * undefined.
+     */
+    public byte[] acquire(int minCapacity) {
+        int shift = classShift(minCapacity);
+        if (shift > MAX_CLASS_SHIFT) {
+            return new byte[minCapacity];
+        }
+        byte[] buffer = classes[shift - MIN_CLASS_SHIFT].poll();
+        if (buffer == null) {
+            return new byte[1 << shift];
+        }
+        pooledBytes.addAndGet(-buffer.length);
+        return buffer;
+    }
+
+    /**
+     * Return a buffer obtained from {@link #acquire(int)}. The caller must not
+     * use it afterward, nor release it twice.
+     */
+    public void release(byte[] buffer) {
+        int length = buffer.length;
+        if (Integer.bitCount(length) != 1 || length < (1 << MIN_CLASS_SHIFT)) {
+            // Not one of ours (an oversized one-off allocation).
+            return;
+        }
+        if (pooledBytes.addAndGet(length) > maxPooledBytes) {
+            pooledBytes.addAndGet(-length);
+            return;
+        }
+        classes[Integer.numberOfTrailingZeros(length) - MIN_CLASS_SHIFT].offer(buffer);
+    }
+
+    long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    private static int classShift(int capacity) {
+        if (capacity <= 1 << MIN_CLASS_SHIFT) {
+            return MIN_CLASS_SHIFT;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1);
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.internal;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A timer for large numbers of short, mostly-cancelled timeouts, such as one
+ * per in-flight request. Scheduling and cancelling are O(1) and lock-free for
+ * the caller; a single daemon thread advances a wheel of buckets once per tick
+ * and expires whatever is due. Timeouts fire up to one tick late.
+ * <p>
+ * Tasks run on the timer thread and must be short.
+ */
+public final class HashedWheelTimer {
+    private static final HashedWheelTimer SHARED = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 512);
+
+    /**
+     * Bounds how much of a burst of newly scheduled timeouts one tick moves
+     * into the wheel, so a flood of schedules can't starve expiry.
+     */
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger scheduled = new AtomicInteger();
+
+    private final Thread worker;
+    private final AtomicInteger workerState = new AtomicInteger(); // 0 = not started, 1 = started, 2 = stopped
+    private volatile long startTime;
+
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("ticksPerWheel must be in (0, 2^30]");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.wheel = new Bucket[Math.max(size, 1)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.worker = new Thread(this::run, "jsonrpc-timer");
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * @return a timer shared by every connection in the process, ticking every
+     * 10 milliseconds.
+     */
+    public static HashedWheelTimer shared() {
+        return SHARED;
+    }
+
+    /**
+     * Run {@code task} on the timer thread once {@code delay} has elapsed,
+     * unless the returned timeout is cancelled first.
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        start();
+        // Deadlines are kept relative to startTime so they never overflow.
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        Timeout timeout = new Timeout(this, task, deadline);
+        scheduled.incrementAndGet();
+        pending.offer(timeout);
+        return timeout;
+    }
+
+    /**
+     * @return timeouts scheduled and neither expired nor cancelled yet.
+     */
+    public int getScheduledCount() {
+        return scheduled.get();
+    }
+
+    /**
+     * Stop the timer thread. Timeouts that haven't fired never will.
+     */
+    public void stop() {
+        if (workerState.getAndSet(2) == 1) {
+            worker.interrupt();
+        }
+    }
+
+    private void start() {
+        if (workerState.get() == 0 && workerState.compareAndSet(0, 1)) {
+            long now = System.nanoTime();
+            // Zero means "not started yet" to the other callers below.
+            startTime = now == 0 ? 1 : now;
+            worker.start();
+        }
+        while (startTime == 0) {
+            // Another thread won the race to start the worker and is about
+            // to publish startTime.
+            Thread.yield();
+        }
+    }
+
+    private void run() {
+        long tick = 0;
+        while (workerState.get() == 1) {
+            long now = waitForNextTick(tick);
+            if (now < 0) {
+                return;
+            }
+            Timeout timeout;
+            while ((timeout = cancelled.poll()) != null) {
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                }
+            }
+            for (int i = 0; i < MAX_TRANSFERS_PER_TICK && (timeout = pending.poll()) != null; i++) {
+                if (timeout.state == Timeout.CANCELLED) {
+                    continue;
+                }
+                long expiresAtTick = timeout.deadline / tickNanos;
+                timeout.remainingRounds = (expiresAtTick - tick) / wheel.length;
+                // Already overdue timeouts go into the current bucket so
+                // they fire on this tick rather than a wheel turn later.
+                wheel[(int) (Math.max(expiresAtTick, tick) & mask)].add(timeout);
+            }
+            wheel[(int) (tick & mask)].expire(now);
+            tick++;
+        }
+    }
+
+    /**
+     * @return the current time relative to startTime, or -1 once stopped.
+     */
+    private long waitForNextTick(long tick) {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            long sleepNanos = deadline - now;
+            if (sleepNanos <= 0) {
+                return now;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (workerState.get() != 1) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    public static final class Timeout {
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = INIT;
+
+        // Owned by the timer thread.
+        private long remainingRounds;
+        private @Nullable Timeout next;
+        private @Nullable Timeout prev;
+        private @Nullable Bucket bucket;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return {@code true} if this call prevented the task from running.
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, INIT, CANCELLED)) {
+                return false;
+            }
+            timer.scheduled.decrementAndGet();
+            // Unlinked from its bucket by the timer thread on its next tick,
+            // so the task it holds doesn't linger until the deadline.
+            timer.cancelled.offer(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, INIT, EXPIRED)) {
+                return;
+            }
+            timer.scheduled.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable ignored) {
+                // A failing task must not take the timer thread down with it.
+            }
+        }
+    }
+
+    /**
+     * A doubly-linked list of timeouts, touched only by the timer thread.
+     */
+    private static final class Bucket {
+        private @Nullable Timeout head;
+        private @Nullable Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                assert tail != null;
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire(long now) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    if (timeout.deadline <= now) {
+                        remove(timeout);
+                        timeout.expire();
+                    }
+                } else if (timeout.state == Timeout.CANCELLED) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -15,74 +15,155 @@
  */
 package io.moderne.jsonrpc.internal;
 
+import io.moderne.jsonrpc.RequestIdGenerator;
+
 import java.util.concurrent.atomic.AtomicLong;
 
-public final class SnowflakeId {
+/**
+ * Short, unique ids produced in a similar way as Twitter's Snowflake ID: a
+ * millisecond timestamp, a machine id, and a sequence number within the
+ * millisecond.
+ * <p>
+ * Threads reserve sequence numbers in blocks, so under heavy multi-threaded use
+ * they mostly draw from their own block rather than contending on the shared
+ * state. Ids are unique per machine id and increase monotonically in the order
+ * any one thread generates them.
+ * <p>
+ * Numeric ids exceed 2<sup>53</sup>; don't hand them to a JavaScript peer as
+ * JSON numbers.
+ */
+public final class SnowflakeId implements RequestIdGenerator {
     private static final long EPOCH = 1640995200000L; // Custom epoch
-    private static final long MACHINE_ID = 1L;        // Unique machine ID (0-1023)
 
     private static final long MACHINE_ID_BITS = 10L;
     private static final long SEQUENCE_BITS = 12L;
 
-    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_MACHINE_ID = (1L << MACHINE_ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
     private static final long MACHINE_ID_SHIFT = SEQUENCE_BITS;
     private static final long TIMESTAMP_SHIFT = MACHINE_ID_SHIFT + MACHINE_ID_BITS;
 
     /**
-     * Packed (timestamp_since_epoch &lt;&lt; SEQUENCE_BITS | sequence_within_ms).
-     * Single source of truth for monotonicity — split AtomicLongs would race
-     * across the millisecond boundary and produce duplicates.
+     * Sequence numbers a thread reserves at once.
+     */
+    private static final int BLOCK_SIZE = 64;
+
+    /**
+     * How far ids may be timestamped ahead of the wall clock before a thread
+     * waits for the clock to catch up.
      */
-    private static final AtomicLong state = new AtomicLong(0L);
+    private static final long MAX_LEAD_MILLIS = 4;
+
+    private static final SnowflakeId DEFAULT = new SnowflakeId(1L);
+
+    private static final String BASE62_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
 
-    private SnowflakeId() {
+    /**
+     * Base62 digits in a positive long.
+     */
+    private static final int MAX_ENCODED_LENGTH = 11;
+
+    private final long machineBits;
+
+    /**
+     * Packed (timestamp_since_epoch &lt;&lt; SEQUENCE_BITS | sequence_within_ms)
+     * of the next id nobody has reserved. Single source of truth for
+     * uniqueness — split AtomicLongs would race across the millisecond
+     * boundary and produce duplicates.
+     * <p>
+     * A millisecond whose 4096 sequence numbers are used up simply carries
+     * into the next one, which is what adding to the packed value does anyway.
+     * The timestamp borrows up to {@link #MAX_LEAD_MILLIS} ahead of the wall
+     * clock so short bursts don't spin. Beyond that, threads wait for the
+     * clock, so many threads each reserving a block can't push the timestamp
+     * ever further ahead.
+     */
+    private final AtomicLong state = new AtomicLong(0L);
+
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    /**
+     * @param machineId distinguishes generators whose ids must not collide,
+     *                  e.g. one per process sharing a peer (0-1023).
+     */
+    public SnowflakeId(long machineId) {
+        if (machineId < 0 || machineId > MAX_MACHINE_ID) {
+            throw new IllegalArgumentException("machineId must be between 0 and " + MAX_MACHINE_ID);
+        }
+        this.machineBits = machineId << MACHINE_ID_SHIFT;
     }
 
     /**
-     * @return A short, unique ID produced in a similar way as Twitter's Snowflake ID.
+     * @return A short, unique ID from the process-wide generator (machine id 1).
      */
     public static String generateId() {
-        while (true) {
-            long currentMs = System.currentTimeMillis() - EPOCH;
-            long prev = state.get();
-            long prevTs = prev >>> SEQUENCE_BITS;
-            long prevSeq = prev & MAX_SEQUENCE;
-
-            long nextTs;
-            long nextSeq;
-            if (currentMs > prevTs) {
-                // Forward time — new millisecond, reset sequence.
-                nextTs = currentMs;
-                nextSeq = 0L;
-            } else {
-                // Same ms (or clock went backward — keep prevTs to preserve
-                // monotonicity, advance the sequence within it).
-                nextTs = prevTs;
-                nextSeq = prevSeq + 1;
-                if (nextSeq > MAX_SEQUENCE) {
-                    // Sequence exhausted within this ms — yield and retry
-                    // until the clock advances or we observe a fresher state.
+        return DEFAULT.next();
+    }
+
+    /**
+     * @return the next id, base62-encoded.
+     */
+    public String next() {
+        Block block = blocks.get();
+        long value = block.next();
+        char[] chars = block.chars;
+        int pos = MAX_ENCODED_LENGTH;
+        do {
+            chars[--pos] = BASE62_ALPHABET.charAt((int) (value % 62));
+            value /= 62;
+        } while (value > 0);
+        return new String(chars, pos, MAX_ENCODED_LENGTH - pos);
+    }
+
+    @Override
+    public long nextId() {
+        return blocks.get().next();
+    }
+
+    private long compose(long packed) {
+        long timestamp = packed >>> SEQUENCE_BITS;
+        return (timestamp << TIMESTAMP_SHIFT) | machineBits | (packed & SEQUENCE_MASK);
+    }
+
+    private final class Block {
+        final char[] chars = new char[MAX_ENCODED_LENGTH];
+
+        /**
+         * Packed values [next, limit) reserved by this thread.
+         */
+        long next;
+        long limit;
+
+        long next() {
+            long nowPacked = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+            if (next >= limit || limit <= nowPacked) {
+                // Exhausted, or reserved in a millisecond that has since
+                // passed; ids drawn from it would carry a stale timestamp.
+                reserve(nowPacked);
+            }
+            return compose(next++);
+        }
+
+        private void reserve(long nowPacked) {
+            while (true) {
+                long prev = state.get();
+                long start = Math.max(prev, nowPacked);
+                if ((start - nowPacked) >>> SEQUENCE_BITS > MAX_LEAD_MILLIS) {
                     Thread.yield();
+                    nowPacked = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
                     continue;
                 }
+                // Stop at the end of the millisecond so a block never spans
+                // two, keeping the staleness check above exact.
+                long count = Math.min(BLOCK_SIZE, (SEQUENCE_MASK + 1) - (start & SEQUENCE_MASK));
+                if (state.compareAndSet(prev, start + count)) {
+                    next = start;
+                    limit = start + count;
+                    return;
+                }
+                // CAS lost the race — another thread reserved first. Retry
+                // from the fresh state.
             }
-            long next = (nextTs << SEQUENCE_BITS) | nextSeq;
-            if (state.compareAndSet(prev, next)) {
-                return encodeBase62((nextTs << TIMESTAMP_SHIFT) | (MACHINE_ID << MACHINE_ID_SHIFT) | nextSeq);
-            }
-            // CAS lost the race — another thread updated state. Retry; the
-            // fresh `prev` read will produce a higher sequence (or timestamp).
-        }
-    }
-
-    private static final String BASE62_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
-
-    private static String encodeBase62(long value) {
-        StringBuilder sb = new StringBuilder();
-        while (value > 0) {
-            sb.append(BASE62_ALPHABET.charAt((int) (value % 62)));
-            value /= 62;
         }
-        return sb.reverse().toString();
     }
 }
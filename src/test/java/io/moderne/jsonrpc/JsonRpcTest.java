@@ -28,15 +28,30 @@ import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class JsonRpcTest {
     JsonRpc jsonRpc;
@@ -141,6 +156,322 @@ public class JsonRpcTest {
         ).hasCauseInstanceOf(JsonRpcException.class);
     }
 
+    @Test
+    void boundServiceTakesPositionalAndNamedParams() throws Exception {
+        jsonRpc.bindService(new GreetingService()).bind();
+
+        assertThat(jsonRpc.send(JsonRpcRequest.newRequest("greet", List.of("Jon", 2)))
+                .get(5, TimeUnit.SECONDS).getResult(String.class))
+                .isEqualTo("Hello Jon Hello Jon");
+        assertThat(jsonRpc.send(JsonRpcRequest.newRequest("greet", Map.of("name", "Jim", "times", 1)))
+                .get(5, TimeUnit.SECONDS).getResult(String.class))
+                .isEqualTo("Hello Jim");
+    }
+
+    @Test
+    void boundServiceTakesWholeParamsForSingleStructuredParameter() throws Exception {
+        jsonRpc.bindService(new GreetingService()).bind();
+
+        assertThat(jsonRpc.send(JsonRpcRequest.newRequest("hello", new Person("Jon")))
+                .get(5, TimeUnit.SECONDS).getResult(String.class))
+                .isEqualTo("Hello Jon");
+        assertThat(jsonRpc.send(JsonRpcRequest.newRequest("ping"))
+                .get(5, TimeUnit.SECONDS).getResult(Object.class))
+                .isNull();
+    }
+
+    @Test
+    void bindingServiceOverNameDropsItsBulkhead() {
+        jsonRpc.rpc("ping", new JsonRpcMethod<Void>() {
+            @Override
+            protected Object handle(Void params) {
+                return "pong";
+            }
+        }, MethodOptions.sequential());
+        assertThat(jsonRpc.getBulkhead("ping")).isNotNull();
+
+        jsonRpc.bindService(new GreetingService());
+
+        assertThat(jsonRpc.getBulkhead("ping")).isNull();
+    }
+
+    @Test
+    void boundServiceIsCancelled() throws Exception {
+        CancellableService service = new CancellableService();
+        jsonRpc.bindService(service).bind();
+
+        CompletableFuture<JsonRpcSuccess> polling = jsonRpc.send(JsonRpcRequest.newRequest("poll"));
+        CompletableFuture<JsonRpcSuccess> sleeping = jsonRpc.send(JsonRpcRequest.newRequest("sleep"));
+        assertThat(service.started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        polling.cancel(true);
+        sleeping.cancel(true);
+
+        assertThat(service.polled.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(service.interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void proxyCallsBoundService() throws Exception {
+        GreetingApi api = jsonRpc.bindService(new GreetingService()).bind().proxy(GreetingApi.class);
+
+        assertThat(api.greet("Jon", 2).get(5, TimeUnit.SECONDS)).isEqualTo("Hello Jon Hello Jon");
+        assertThat(api.hello(new Person("Jim"))).isEqualTo("Hello Jim");
+    }
+
+    @Test
+    void proxyRunsDefaultMethodsLocally() {
+        GreetingApi api = jsonRpc.bindService(new GreetingService()).bind().proxy(GreetingApi.class);
+
+        assertThat(api.greetTwice("Jon")).isEqualTo("Hello Jon Hello Jon");
+    }
+
+    @Test
+    void proxyReturnsPrimitiveDefaultForNullResult() {
+        GreetingApi api = jsonRpc.bindService(new GreetingService()).bind().proxy(GreetingApi.class);
+
+        assertThat(api.pinged()).isFalse();
+    }
+
+    @Test
+    void proxyNotificationTakesNoId() {
+        AtomicLong ids = new AtomicLong();
+        GreetingApi api = jsonRpc.idGenerator(ids::incrementAndGet)
+                .bindService(new GreetingService()).bind().proxy(GreetingApi.class);
+
+        api.pingAndForget();
+        assertThat(ids.get()).isZero();
+        api.hello(new Person("Jim"));
+        assertThat(ids.get()).isEqualTo(1);
+    }
+
+    @Test
+    void batch() throws Exception {
+        List<CompletableFuture<JsonRpcSuccess>> responses = jsonRpc
+                .rpc("hello", new HelloController())
+                .bind()
+                .sendBatch(List.of(
+                        JsonRpcRequest.newRequest("hello", new Person("Jon")),
+                        JsonRpcRequest.newRequest("missing"),
+                        JsonRpcRequest.newRequest("hello", new Person("Jim"))));
+
+        assertThat(responses.get(0).get(5, TimeUnit.SECONDS).getResult(String.class)).isEqualTo("Hello Jon");
+        assertThatThrownBy(() -> responses.get(1).get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(JsonRpcException.class)
+                .hasMessageContaining("Method not found");
+        assertThat(responses.get(2).get(5, TimeUnit.SECONDS).getResult(String.class)).isEqualTo("Hello Jim");
+    }
+
+    @Test
+    void cancellingFutureCancelsHandler() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CompletableFuture<JsonRpcSuccess> response = jsonRpc
+                .rpc("spin", new JsonRpcMethod<Void>() {
+                    @Override
+                    protected Object handle(Void params) throws InterruptedException {
+                        started.countDown();
+                        while (!getCancellationToken().isCancellationRequested()) {
+                            Thread.sleep(5);
+                        }
+                        cancelled.countDown();
+                        return "too late";
+                    }
+                })
+                .bind()
+                .send(JsonRpcRequest.newRequest("spin"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        response.cancel(true);
+
+        assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void cancelInterruptsHandlerThatOptsIn() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<JsonRpcSuccess> response = jsonRpc
+                .rpc("sleep", new JsonRpcMethod<Void>() {
+                    @Override
+                    protected boolean interruptOnCancel() {
+                        return true;
+                    }
+
+                    @Override
+                    protected Object handle(Void params) throws InterruptedException {
+                        started.countDown();
+                        try {
+                            Thread.sleep(60_000);
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                            throw e;
+                        }
+                        return "slept";
+                    }
+                })
+                .bind()
+                .send(JsonRpcRequest.newRequest("sleep"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        response.cancel(true);
+
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void cancelReachesRequestQueuedBehindSequentialMethod() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        jsonRpc.rpc("seq", new JsonRpcMethod<List<Integer>>() {
+            @Override
+            protected Object handle(List<Integer> params) throws InterruptedException {
+                handled.add(params.get(0));
+                if (params.get(0) == 1) {
+                    started.countDown();
+                    release.await();
+                }
+                return params.get(0);
+            }
+        }, MethodOptions.sequential()).bind();
+
+        CompletableFuture<JsonRpcSuccess> first = jsonRpc.send(JsonRpcRequest.newRequest("seq", List.of(1)));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<JsonRpcSuccess> queued = jsonRpc.send(JsonRpcRequest.newRequest("seq", List.of(2)));
+        Thread.sleep(100);
+        queued.cancel(true);
+        Thread.sleep(100);
+        release.countDown();
+
+        first.get(5, TimeUnit.SECONDS);
+        // Sequential, so by the time this is answered the cancelled one has
+        // been dequeued, and skipped.
+        jsonRpc.send(JsonRpcRequest.newRequest("seq", List.of(3))).get(5, TimeUnit.SECONDS);
+        assertThat(handled).containsExactly(1, 3);
+    }
+
+    @Test
+    void cancelCancelsPendingAsyncResult() throws Exception {
+        CompletableFuture<Object> pending = new CompletableFuture<>();
+        CountDownLatch cancelled = new CountDownLatch(1);
+        pending.whenComplete((result, t) -> cancelled.countDown());
+        CompletableFuture<JsonRpcSuccess> response = jsonRpc
+                .rpc("later", new JsonRpcMethod<Void>() {
+                    @Override
+                    protected Object handle(Void params) {
+                        return pending;
+                    }
+                })
+                .bind()
+                .send(JsonRpcRequest.newRequest("later"));
+        Thread.sleep(100);
+
+        response.cancel(true);
+
+        assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(pending.isCancelled()).isTrue();
+    }
+
+    @Test
+    void requestTimesOut() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CompletableFuture<JsonRpcSuccess> response = jsonRpc
+                .rpc("hang", new JsonRpcMethod<Void>() {
+                    @Override
+                    protected Object handle(Void params) throws InterruptedException {
+                        while (!getCancellationToken().isCancellationRequested()) {
+                            Thread.sleep(5);
+                        }
+                        cancelled.countDown();
+                        return "too late";
+                    }
+                })
+                .cancelOnTimeout(true)
+                .bind()
+                .send(JsonRpcRequest.newRequest("hang"), Duration.ofMillis(100));
+
+        assertThatThrownBy(() -> response.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(cancelled.await(5, TimeUnit.SECONDS))
+                .as("peer was sent $/cancelRequest")
+                .isTrue();
+    }
+
+    @Test
+    void requestTimesOutBeforeTheTimerTicks() throws Exception {
+        jsonRpc.rpc("hang", new JsonRpcMethod<Void>() {
+            @Override
+            protected Object handle(Void params) {
+                return new CompletableFuture<>();
+            }
+        }).bind();
+
+        for (int i = 0; i < 100; i++) {
+            CompletableFuture<JsonRpcSuccess> response = jsonRpc.send(
+                    JsonRpcRequest.newRequest("hang"), Duration.ofNanos(1));
+            assertThatThrownBy(() -> response.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(TimeoutException.class);
+        }
+    }
+
+    @Test
+    void fullInFlightWindowFailsFast() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        jsonRpc
+                .rpc("wait", new JsonRpcMethod<Void>() {
+                    @Override
+                    protected Object handle(Void params) throws InterruptedException {
+                        release.await();
+                        return "done";
+                    }
+                })
+                .maxInFlight(2, InFlightWindow.Overflow.FAIL)
+                .bind();
+
+        CompletableFuture<JsonRpcSuccess> first = jsonRpc.send(JsonRpcRequest.newRequest("wait"));
+        CompletableFuture<JsonRpcSuccess> second = jsonRpc.send(JsonRpcRequest.newRequest("wait"));
+        CompletableFuture<JsonRpcSuccess> third = jsonRpc.send(JsonRpcRequest.newRequest("wait"));
+
+        assertThatThrownBy(third::join).hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(jsonRpc.getInFlightWindow().getPermitsInUse()).isEqualTo(2);
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).getResult(String.class)).isEqualTo("done");
+        assertThat(second.get(5, TimeUnit.SECONDS).getResult(String.class)).isEqualTo("done");
+        assertThat(jsonRpc.getInFlightWindow().getRejectedRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void queuedRequestsWaitForASlot() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        jsonRpc
+                .rpc("work", new JsonRpcMethod<Void>() {
+                    @Override
+                    protected Object handle(Void params) throws InterruptedException {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(10);
+                        running.decrementAndGet();
+                        return "done";
+                    }
+                })
+                .maxInFlight(2, InFlightWindow.Overflow.QUEUE)
+                .bind();
+
+        List<CompletableFuture<JsonRpcSuccess>> responses = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            responses.add(jsonRpc.send(JsonRpcRequest.newRequest("work")));
+        }
+        for (CompletableFuture<JsonRpcSuccess> response : responses) {
+            assertThat(response.get(5, TimeUnit.SECONDS).getResult(String.class)).isEqualTo("done");
+        }
+
+        // The peer never sees more requests at once than the window allows.
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+        assertThat(jsonRpc.getInFlightWindow().getWaitedSends()).isPositive();
+        assertThat(jsonRpc.getInFlightWindow().getQueuedRequests()).isZero();
+    }
+
     @Test
     void readerLoopExitsCleanlyOnEof() throws Exception {
         // When the peer closes the stream, the reader loop must shut down
@@ -214,9 +545,506 @@ public class JsonRpcTest {
         }
     }
 
+    @Test
+    void handlersRunOnSuppliedExecutor() throws Exception {
+        PipedOutputStream os = new PipedOutputStream();
+        PipedInputStream is = new PipedInputStream(os);
+        ExecutorService executor = Executors.newFixedThreadPool(2, r -> new Thread(r, "custom-dispatch"));
+        JsonRpc localRpc = new JsonRpc(new HeaderDelimitedMessageHandler(is, os), new JsonMessageFormatter(), executor);
+        try {
+            JsonRpcSuccess response = localRpc
+                    .rpc("thread", new JsonRpcMethod<Void>() {
+                        @Override
+                        protected Object handle(Void params) {
+                            return Thread.currentThread().getName();
+                        }
+                    })
+                    .bind()
+                    .send(JsonRpcRequest.newRequest("thread"))
+                    .get(5, TimeUnit.SECONDS);
+
+            assertThat(response.getResult(String.class)).isEqualTo("custom-dispatch");
+        } finally {
+            localRpc.shutdown();
+        }
+        assertThat(executor.isShutdown())
+                .as("a supplied executor belongs to the caller")
+                .isFalse();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void nestedRequestFromHandlerOnSingleDispatchThread() throws Exception {
+        // The only dispatch thread blocks in a handler on a request back to the
+        // peer. Its response can only be read by the reader loop, which
+        // therefore must not share the dispatch executor.
+        PipedOutputStream clientToServer = new PipedOutputStream();
+        PipedInputStream serverIn = new PipedInputStream(clientToServer);
+        PipedOutputStream serverToClient = new PipedOutputStream();
+        PipedInputStream clientIn = new PipedInputStream(serverToClient);
+        JsonMessageFormatter formatter = new JsonMessageFormatter();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        JsonRpc client = new JsonRpc(new HeaderDelimitedMessageHandler(clientIn, clientToServer), formatter, executor);
+        JsonRpc server = new JsonRpc(new HeaderDelimitedMessageHandler(serverIn, serverToClient), formatter);
+        try {
+            client.rpc("outer", new JsonRpcMethod<Void>() {
+                @Override
+                protected Object handle(Void params) throws Exception {
+                    return "outer " + client.send(JsonRpcRequest.newRequest("inner"))
+                            .get(5, TimeUnit.SECONDS)
+                            .getResult(String.class);
+                }
+            }).bind();
+            server.rpc("inner", new JsonRpcMethod<Void>() {
+                @Override
+                protected Object handle(Void params) {
+                    return "inner";
+                }
+            }).bind();
+
+            JsonRpcSuccess response = server.send(JsonRpcRequest.newRequest("outer")).get(5, TimeUnit.SECONDS);
+
+            assertThat(response.getResult(String.class)).isEqualTo("outer inner");
+        } finally {
+            client.shutdown();
+            server.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void idGeneratorIsPerConnection() throws Exception {
+        PipedOutputStream os = new PipedOutputStream();
+        JsonRpc other = new JsonRpc(new HeaderDelimitedMessageHandler(new PipedInputStream(os), os),
+                new JsonMessageFormatter())
+                .idGenerator(() -> 42L);
+        try {
+            assertThat(other.newRequest("a").getId()).isEqualTo(42L);
+            assertThat(jsonRpc.newRequest("a").getId()).isNotEqualTo(42L);
+            assertThat(JsonRpcRequest.newRequest("a").getId()).isNotEqualTo(42L);
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    @Test
+    void asyncNullResultIsAnsweredLikeSyncNull() throws Exception {
+        jsonRpc.rpc("sync", new JsonRpcMethod<Void>() {
+            @Override
+            protected Object handle(Void params) {
+                return null;
+            }
+        }).rpc("async", new JsonRpcMethod<Void>() {
+            @Override
+            protected Object handle(Void params) {
+                return CompletableFuture.completedFuture(null);
+            }
+        }).bind();
+
+        for (String method : new String[]{"sync", "async"}) {
+            assertThatThrownBy(() -> jsonRpc.send(JsonRpcRequest.newRequest(method)).get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(JsonRpcException.class)
+                    .hasMessageContaining("Method returned null");
+        }
+    }
+
+    @Test
+    void partialResultsStreamElementsInOrder() throws Exception {
+        jsonRpc.rpc("range", new JsonRpcMethod<Map<String, Integer>>() {
+            @Override
+            protected Object handle(Map<String, Integer> params) {
+                return IntStream.range(0, params.get("n")).boxed().iterator();
+            }
+        }).bind();
+
+        List<Integer> streamed = new ArrayList<>();
+        PartialResults<Integer> partialResults = jsonRpc.sendForPartialResults(
+                JsonRpcRequest.newRequest("range", Collections.singletonMap("n", 1000)), Integer.class);
+        partialResults.forEachRemaining(streamed::add);
+
+        assertThat(streamed).containsExactlyElementsOf(IntStream.range(0, 1000).boxed().collect(Collectors.toList()));
+        assertThat(partialResults.getResponse().get(5, TimeUnit.SECONDS).getResult(List.class)).isEmpty();
+
+        // Without a partial result token the peer answers with the whole list.
+        JsonRpcSuccess whole = jsonRpc.send(JsonRpcRequest.newRequest("range", Collections.singletonMap("n", 3)))
+                .get(5, TimeUnit.SECONDS);
+        assertThat(whole.getResult(List.class)).containsExactly(0, 1, 2);
+    }
+
+    @Test
+    void partialResultsNotYetIteratedDoNotHoldUpTheReader() throws Exception {
+        jsonRpc.rpc("range", new JsonRpcMethod<Map<String, Integer>>() {
+            @Override
+            protected Object handle(Map<String, Integer> params) {
+                return IntStream.range(0, params.get("n")).boxed().iterator();
+            }
+        }).bind();
+
+        // The peer sends a window's worth of partial results, then waits for
+        // them to be iterated, while everything else carries on.
+        PartialResults<Integer> partialResults = jsonRpc.sendForPartialResults(
+                JsonRpcRequest.newRequest("range", Collections.singletonMap("n", 100_000)), Integer.class);
+        assertThat(jsonRpc.send(JsonRpcRequest.newRequest("range", Collections.singletonMap("n", 1)))
+                .get(5, TimeUnit.SECONDS).getResult(List.class)).containsExactly(0);
+        assertThat(partialResults.getResponse()).isNotDone();
+
+        List<Integer> streamed = new ArrayList<>();
+        partialResults.forEachRemaining(streamed::add);
+        assertThat(streamed).hasSize(100_000);
+        assertThat(partialResults.getResponse().get(5, TimeUnit.SECONDS).getResult(List.class)).isEmpty();
+    }
+
+    @Test
+    void partialResultsAreSentNoFurtherAheadThanTheWindow() throws Exception {
+        AtomicInteger produced = new AtomicInteger();
+        jsonRpc.rpc("range", new JsonRpcMethod<Map<String, Integer>>() {
+            @Override
+            protected Object handle(Map<String, Integer> params) {
+                return IntStream.range(0, params.get("n")).peek(i -> produced.incrementAndGet()).boxed();
+            }
+        }).bind();
+
+        PartialResults<Integer> partialResults = jsonRpc.sendForPartialResults(
+                JsonRpcRequest.newRequest("range", Collections.singletonMap("n", 1_000_000)), Integer.class);
+        assertThat(partialResults.next()).isEqualTo(0);
+        Thread.sleep(500);
+
+        // At most a window of the largest batches.
+        assertThat(produced.get()).isLessThanOrEqualTo(PartialResults.WINDOW * 256 + 1);
+        partialResults.close();
+    }
+
+    @Test
+    void onlyCollectionsStreamsAndIteratorsAreStreamed() throws Exception {
+        jsonRpc.rpc("path", new JsonRpcMethod<Map<String, Object>>() {
+            @Override
+            protected Object handle(Map<String, Object> params) {
+                // Iterable, over the path's names.
+                return Paths.get("a", "b");
+            }
+        }).bind();
+
+        PartialResults<String> partialResults = jsonRpc.sendForPartialResults(
+                JsonRpcRequest.newRequest("path", Collections.emptyMap()), String.class);
+
+        assertThat(partialResults.getResponse().get(5, TimeUnit.SECONDS).getResult(String.class))
+                .endsWith("a/b");
+    }
+
+    @Test
+    void asyncHandlerReleasesDispatchThreadWhileWaiting() throws Exception {
+        // Same shape as the nested request above, but the handler hands back
+        // the pending response instead of blocking on it, so the single
+        // dispatch thread stays free to serve "ping" in the meantime.
+        PipedOutputStream clientToServer = new PipedOutputStream();
+        PipedInputStream serverIn = new PipedInputStream(clientToServer);
+        PipedOutputStream serverToClient = new PipedOutputStream();
+        PipedInputStream clientIn = new PipedInputStream(serverToClient);
+        JsonMessageFormatter formatter = new JsonMessageFormatter();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch pinged = new CountDownLatch(1);
+        JsonRpc client = new JsonRpc(new HeaderDelimitedMessageHandler(clientIn, clientToServer), formatter, executor);
+        JsonRpc server = new JsonRpc(new HeaderDelimitedMessageHandler(serverIn, serverToClient), formatter);
+        try {
+            client.rpc("outer", new JsonRpcMethod<Void>() {
+                @Override
+                protected Object handle(Void params) {
+                    return client.send(JsonRpcRequest.newRequest("inner"))
+                            .thenApply(inner -> "outer " + inner.getResult(String.class));
+                }
+            }).rpc("ping", new JsonRpcMethod<Void>() {
+                @Override
+                protected Object handle(Void params) {
+                    pinged.countDown();
+                    return "pong";
+                }
+            }).bind();
+            server.rpc("inner", new JsonRpcMethod<Void>() {
+                @Override
+                protected Object handle(Void params) throws Exception {
+                    // Only answered once the client served "ping" on the
+                    // thread "outer" would otherwise be blocking.
+                    server.send(JsonRpcRequest.newRequest("ping"));
+                    assertThat(pinged.await(5, TimeUnit.SECONDS)).isTrue();
+                    return "inner";
+                }
+            }).bind();
+
+            JsonRpcSuccess response = server.send(JsonRpcRequest.newRequest("outer")).get(5, TimeUnit.SECONDS);
+
+            assertThat(response.getResult(String.class)).isEqualTo("outer inner");
+        } finally {
+            client.shutdown();
+            server.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void virtualThreadPerRequest() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads require JDK 21");
+        PipedOutputStream os = new PipedOutputStream();
+        PipedInputStream is = new PipedInputStream(os);
+        JsonRpc localRpc = JsonRpc.virtualThreadPerRequest(
+                new HeaderDelimitedMessageHandler(is, os), new JsonMessageFormatter());
+        try {
+            JsonRpcSuccess response = localRpc
+                    .rpc("thread", new JsonRpcMethod<Void>() {
+                        @Override
+                        protected Object handle(Void params) {
+                            return Thread.currentThread().toString();
+                        }
+                    })
+                    .bind()
+                    .send(JsonRpcRequest.newRequest("thread"))
+                    .get(5, TimeUnit.SECONDS);
+
+            assertThat(response.getResult(String.class)).startsWith("VirtualThread");
+        } finally {
+            localRpc.shutdown();
+        }
+    }
+
+    @Test
+    void parallelDecodeKeepsOrderedMethodsInArrivalOrder() throws Exception {
+        List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch allApplied = new CountDownLatch(50);
+        jsonRpc.rpc("edit", new JsonRpcMethod<List<Integer>>() {
+                    @Override
+                    protected Object handle(List<Integer> params) throws Exception {
+                        // Long enough that a concurrently dispatched later
+                        // edit would overtake this one.
+                        Thread.sleep(params.get(0) % 3);
+                        applied.add(params.get(0));
+                        allApplied.countDown();
+                        return params.get(0);
+                    }
+                })
+                .rpc("size", new JsonRpcMethod<List<String>>() {
+                    @Override
+                    protected Object handle(List<String> params) {
+                        return params.size();
+                    }
+                })
+                .parallelDecode("edit")
+                .bind();
+
+        List<CompletableFuture<JsonRpcSuccess>> sizes = new ArrayList<>();
+        List<Integer> sent = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            sizes.add(jsonRpc.send(JsonRpcRequest.newRequest("size", Collections.nCopies(i, "x"))));
+            jsonRpc.notify(new JsonRpcRequest(null, "edit", RawJson.of(List.of(i))));
+            sent.add(i);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(sizes.get(i).get(5, TimeUnit.SECONDS).getResult(Integer.class)).isEqualTo(i);
+        }
+        assertThat(allApplied.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(applied).containsExactlyElementsOf(sent);
+    }
+
+    @Test
+    void parallelDecodeCompletesResponseReceivedJustBeforeEof() throws Exception {
+        JsonRpcRequest request = JsonRpcRequest.newRequest("list");
+        String result = IntStream.range(0, 100_000).mapToObj(i -> "{\"k\":" + i + "}")
+                .collect(Collectors.joining(",", "[", "]"));
+        byte[] wire = frame("{\"jsonrpc\":\"2.0\",\"id\":" + request.getId() + ",\"result\":" + result + "}");
+        JsonRpc localRpc = new JsonRpc(
+                new HeaderDelimitedMessageHandler(new ByteArrayInputStream(wire), new ByteArrayOutputStream()),
+                new JsonMessageFormatter()).parallelDecode();
+        try {
+            CompletableFuture<JsonRpcSuccess> response = localRpc.send(request);
+            localRpc.bind();
+
+            // Still decoding when the reader hits the end of the stream.
+            assertThat(response.get(5, TimeUnit.SECONDS).getResult(List.class)).hasSize(100_000);
+        } finally {
+            localRpc.shutdown();
+        }
+    }
+
+    @Test
+    void parallelDecodeCancelDoesNotOvertakeItsRequest() throws Exception {
+        String params = IntStream.range(0, 100_000).mapToObj(i -> "{\"k\":" + i + "}")
+                .collect(Collectors.joining(",", "[", "]"));
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        wire.write(frame("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"slow\",\"params\":" + params + "}"));
+        wire.write(frame("{\"jsonrpc\":\"2.0\",\"method\":\"$/cancelRequest\",\"params\":{\"id\":1}}"));
+        CompletableFuture<Boolean> cancelled = new CompletableFuture<>();
+        JsonRpc localRpc = new JsonRpc(
+                new HeaderDelimitedMessageHandler(new ByteArrayInputStream(wire.toByteArray()), new ByteArrayOutputStream()),
+                new JsonMessageFormatter());
+        try {
+            localRpc.rpc("slow", new JsonRpcMethod<List<Object>>() {
+                @Override
+                protected Object handle(List<Object> params) throws Exception {
+                    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                    while (!getCancellationToken().isCancellationRequested() && System.nanoTime() < deadline) {
+                        Thread.sleep(1);
+                    }
+                    cancelled.complete(getCancellationToken().isCancellationRequested());
+                    return "done";
+                }
+            }).parallelDecode().bind();
+
+            // The small cancel decodes first, but is only handled once the
+            // request before it is, and while that request is still running.
+            assertThat(cancelled.get(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            localRpc.shutdown();
+        }
+    }
+
+    private static byte[] frame(String json) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        byte[] header = ("Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[header.length + body.length];
+        System.arraycopy(header, 0, frame, 0, header.length);
+        System.arraycopy(body, 0, frame, header.length, body.length);
+        return frame;
+    }
+
+    @Test
+    void bulkheadLimitsOneMethodWithoutStarvingOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        jsonRpc.rpc("visit", new JsonRpcMethod<Void>() {
+                    @Override
+                    protected Object handle(Void params) throws Exception {
+                        release.await();
+                        return "visited";
+                    }
+                }, new MethodOptions().maxConcurrency(1).queueSize(1))
+                .rpc("poll", new JsonRpcMethod<Void>() {
+                    @Override
+                    protected Object handle(Void params) {
+                        return "polled";
+                    }
+                })
+                .bind();
+
+        CompletableFuture<JsonRpcSuccess> running = jsonRpc.send(JsonRpcRequest.newRequest("visit"));
+        CompletableFuture<JsonRpcSuccess> queued = jsonRpc.send(JsonRpcRequest.newRequest("visit"));
+        CompletableFuture<JsonRpcSuccess> rejected = jsonRpc.send(JsonRpcRequest.newRequest("visit"));
+
+        assertThatThrownBy(() -> rejected.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(JsonRpcException.class)
+                .hasMessageContaining("Server overloaded: visit");
+        assertThat(jsonRpc.send(JsonRpcRequest.newRequest("poll")).get(5, TimeUnit.SECONDS).getResult(String.class))
+                .isEqualTo("polled");
+
+        Bulkhead bulkhead = jsonRpc.getBulkhead("visit");
+        assertThat(bulkhead).isNotNull();
+        assertThat(bulkhead.getRunningRequests()).isEqualTo(1);
+        assertThat(bulkhead.getQueuedRequests()).isEqualTo(1);
+        assertThat(bulkhead.getRejectedRequests()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS).getResult(String.class)).isEqualTo("visited");
+        assertThat(queued.get(5, TimeUnit.SECONDS).getResult(String.class)).isEqualTo("visited");
+        assertThat(bulkhead.getWaitedRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void queueSizeWithoutMaxConcurrencyIsRejected() {
+        assertThatThrownBy(() -> jsonRpc.rpc("visit", new HelloController(), new MethodOptions().queueSize(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void bulkheadSlotIsReleasedWhenExecutorRejects() throws Exception {
+        PipedOutputStream os = new PipedOutputStream();
+        PipedInputStream is = new PipedInputStream(os);
+        CountDownLatch rejected = new CountDownLatch(2);
+        ExecutorService executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), (task, pool) -> {
+            rejected.countDown();
+            throw new RejectedExecutionException();
+        });
+        JsonRpc localRpc = new JsonRpc(new HeaderDelimitedMessageHandler(is, os), new JsonMessageFormatter(), executor);
+        try {
+            localRpc.rpc("hello", new HelloController(), MethodOptions.sequential()).bind();
+            executor.shutdown();
+
+            // Only reaches the executor if the first gave its slot back,
+            // rather than queueing behind it.
+            localRpc.send(JsonRpcRequest.newRequest("hello", new Person("Jon")));
+            localRpc.send(JsonRpcRequest.newRequest("hello", new Person("Jim")));
+
+            assertThat(rejected.await(5, TimeUnit.SECONDS)).isTrue();
+            Bulkhead bulkhead = localRpc.getBulkhead("hello");
+            assertThat(bulkhead).isNotNull();
+            assertThat(bulkhead.getQueuedRequests()).isZero();
+        } finally {
+            localRpc.shutdown();
+        }
+    }
+
     record Person(String name) {
     }
 
+    interface GreetingApi {
+        CompletableFuture<String> greet(String name, int times);
+
+        String hello(Person person);
+
+        @Rpc("ping")
+        boolean pinged();
+
+        @Rpc("ping")
+        void pingAndForget();
+
+        default String greetTwice(String name) {
+            return greet(name, 2).join();
+        }
+    }
+
+    public static class GreetingService {
+        @Rpc
+        public String greet(String name, int times) {
+            return ("Hello " + name + " ").repeat(times).trim();
+        }
+
+        @Rpc("hello")
+        public String helloPerson(Person person) {
+            return "Hello " + person.name;
+        }
+
+        @Rpc
+        public void ping() {
+        }
+    }
+
+    public static class CancellableService {
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch polled = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        @Rpc
+        public String poll() throws InterruptedException {
+            started.countDown();
+            while (!CancellationToken.current().isCancellationRequested()) {
+                Thread.sleep(5);
+            }
+            polled.countDown();
+            return "cancelled";
+        }
+
+        @Rpc(interruptOnCancel = true)
+        public String sleep() {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                return "slept";
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                return "interrupted";
+            }
+        }
+    }
+
     static class HelloController extends JsonRpcMethod<Person> {
         @Override
         public Object handle(Person person) {
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenRequestsTest {
+    OpenRequests open = new OpenRequests();
+
+    @Test
+    void numericIdsMatchRegardlessOfBoxedType() {
+        // We send a Long; the parser hands back an Integer when it fits.
+        CompletableFuture<JsonRpcSuccess> future = new CompletableFuture<>();
+        open.put(42L, future);
+
+        assertThat(open.remove(42)).isSameAs(future);
+        assertThat(open.isEmpty()).isTrue();
+    }
+
+    @Test
+    void idsSharingARingSlotBothResolve() {
+        // 1 and 1 + 4096 map to the same slot; the second spills to the overflow map.
+        CompletableFuture<JsonRpcSuccess> first = new CompletableFuture<>();
+        CompletableFuture<JsonRpcSuccess> second = new CompletableFuture<>();
+        open.put(1L, first);
+        open.put(1L + 4096, second);
+
+        assertThat(open.values()).containsExactlyInAnyOrder(first, second);
+        assertThat(open.remove(1L + 4096)).isSameAs(second);
+        assertThat(open.remove(1L)).isSameAs(first);
+        assertThat(open.isEmpty()).isTrue();
+    }
+
+    @Test
+    void reusedNumericIdReplacesTheOpenRequest() {
+        CompletableFuture<JsonRpcSuccess> first = new CompletableFuture<>();
+        CompletableFuture<JsonRpcSuccess> second = new CompletableFuture<>();
+        open.put(1L, first);
+        open.put(1L, second);
+
+        assertThat(open.values()).containsExactly(second);
+        assertThat(open.remove(1L, first)).isFalse();
+        assertThat(open.remove(1L)).isSameAs(second);
+        assertThat(open.isEmpty()).isTrue();
+    }
+
+    @Test
+    void reusedOverflowIdReplacesTheOpenRequest() {
+        // 1 + 4096 overflows while 1 holds the slot, then is put again once
+        // the slot is free.
+        CompletableFuture<JsonRpcSuccess> holder = new CompletableFuture<>();
+        CompletableFuture<JsonRpcSuccess> first = new CompletableFuture<>();
+        CompletableFuture<JsonRpcSuccess> second = new CompletableFuture<>();
+        open.put(1L, holder);
+        open.put(1L + 4096, first);
+        open.remove(1L);
+        open.put(1L + 4096, second);
+
+        assertThat(open.values()).containsExactly(second);
+        assertThat(open.remove(1L + 4096)).isSameAs(second);
+        assertThat(open.remove(1L + 4096)).isNull();
+        assertThat(open.isEmpty()).isTrue();
+    }
+
+    @Test
+    void stringIds() {
+        CompletableFuture<JsonRpcSuccess> future = new CompletableFuture<>();
+        open.put("abc", future);
+
+        assertThat(open.remove("abc", new CompletableFuture<>())).isFalse();
+        assertThat(open.remove("abc", future)).isTrue();
+        assertThat(open.remove("abc")).isNull();
+    }
+}
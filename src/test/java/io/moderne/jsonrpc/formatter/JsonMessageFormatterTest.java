@@ -15,12 +15,22 @@
  */
 package io.moderne.jsonrpc.formatter;
 
+import io.moderne.jsonrpc.JsonRpcBatch;
+import io.moderne.jsonrpc.JsonRpcError;
 import io.moderne.jsonrpc.JsonRpcMessage;
+import io.moderne.jsonrpc.JsonRpcRequest;
+import io.moderne.jsonrpc.JsonRpcSuccess;
+import io.moderne.jsonrpc.RawJson;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -28,6 +38,9 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 public class JsonMessageFormatterTest {
     JsonMessageFormatter formatter = new JsonMessageFormatter();
 
+    @SuppressWarnings("unused")
+    Map<String, List<Long>> counts;
+
     @Test
     void idAsString() throws IOException {
         assertThat(message("{\"jsonrpc\":\"2.0\",\"id\":\"1\"}").getId()).isEqualTo("1");
@@ -55,6 +68,138 @@ public class JsonMessageFormatterTest {
                 .hasMessageContaining("MUST");
     }
 
+    @Test
+    void batch() throws IOException {
+        JsonRpcMessage batch = message("[{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"a\"}," +
+                                       "{\"jsonrpc\":\"2.0\",\"method\":\"b\"}]");
+        assertThat(batch).isInstanceOf(JsonRpcBatch.class);
+        assertThat(((JsonRpcBatch) batch).getMessages())
+                .extracting(m -> ((JsonRpcRequest) m).getMethod())
+                .containsExactly("a", "b");
+    }
+
+    @Test
+    void convertToRegisteredGenericType() throws Exception {
+        Type type = JsonMessageFormatterTest.class.getDeclaredField("counts").getGenericType();
+        formatter.registerType(type);
+
+        JsonRpcRequest request = (JsonRpcRequest) message("{\"jsonrpc\":\"2.0\",\"method\":\"a\",\"params\":{\"x\":[1,2]}}");
+        Map<String, List<Long>> params = formatter.convertValue(request.getParams(), type);
+        assertThat(params.get("x")).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void serializeEnvelopes() throws IOException {
+        assertThat(serialize(new JsonRpcRequest(1, "a", RawJson.of(List.of("x", 2)))))
+                .isEqualTo("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"a\",\"params\":[\"x\",2]}");
+        assertThat(serialize(new JsonRpcRequest(null, "a", RawJson.of(null))))
+                .isEqualTo("{\"jsonrpc\":\"2.0\",\"method\":\"a\",\"params\":null}");
+        assertThat(serialize(new JsonRpcSuccess("1", RawJson.of(Map.of("k", "v")))))
+                .isEqualTo("{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"result\":{\"k\":\"v\"}}");
+        assertThat(serialize(JsonRpcError.internalError(null, "boom")))
+                .isEqualTo("{\"jsonrpc\":\"2.0\",\"id\":null,\"error\":{\"code\":-32603,\"message\":\"Internal error: boom\"}}");
+    }
+
+    @Test
+    void serializeReplaysParsedPayload() throws IOException {
+        String json = "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"a\",\"params\":{\"x\":[1,2.5,\"s\",true,null,{}]}}";
+        assertThat(serialize(message(json))).isEqualTo(json);
+    }
+
+    @Test
+    void retainedInputIsConvertedOnDemandAndForwardedVerbatim() throws IOException {
+        JsonMessageFormatter retaining = new JsonMessageFormatter().retainInput(true);
+        byte[] frame = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"a\",\"params\":{\"x\": [1, 2],\"y\":\"\\u00e9\"}}"
+                .getBytes(StandardCharsets.UTF_8);
+        JsonRpcRequest request = (JsonRpcRequest) retaining.deserialize(frame, 0, frame.length);
+
+        assertThat(retaining.<Map<String, Object>>convertValue(request.getParams(), Map.class))
+                .containsEntry("x", List.of(1, 2))
+                .containsEntry("y", "\u00e9");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        retaining.serialize(new JsonRpcSuccess(1, request.getParams()), out);
+        assertThat(out.toString(StandardCharsets.UTF_8))
+                .isEqualTo("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"x\": [1, 2],\"y\":\"\\u00e9\"}}");
+    }
+
+    @Test
+    void frameDecoderMatchesWholeFrameDeserialization() throws IOException {
+        String frame = "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"m\",\"params\":{\"s\":\"h\u00e9llo\",\"n\":[1,2.5,null]}}";
+        byte[] bytes = frame.getBytes(StandardCharsets.UTF_8);
+        FrameDecoder decoder = formatter.newFrameDecoder();
+        assertThat(decoder).isNotNull();
+        for (int i = 0; i < bytes.length; i++) {
+            // One byte at a time splits every token, and the multibyte character.
+            decoder.feed(bytes, i, 1);
+        }
+
+        JsonRpcRequest request = (JsonRpcRequest) decoder.finish();
+        assertThat(request.getId()).isEqualTo(3);
+        assertThat(serialize(request)).isEqualTo(serialize(message(frame)));
+    }
+
+    @Test
+    void frameDecoderReadsBatchesAndScalarResults() throws IOException {
+        String frame = "[{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"one\"}," +
+                       "{\"jsonrpc\":\"2.0\",\"id\":2,\"error\":{\"code\":-32601,\"message\":\"nope\"}}," +
+                       "{\"jsonrpc\":\"2.0\",\"extra\":{\"a\":[1]},\"method\":\"n\",\"params\":[{\"b\":[]}]}]";
+        byte[] bytes = frame.getBytes(StandardCharsets.UTF_8);
+        FrameDecoder decoder = formatter.newFrameDecoder();
+        assertThat(decoder).isNotNull();
+        for (int i = 0; i < bytes.length; i += 5) {
+            decoder.feed(bytes, i, Math.min(5, bytes.length - i));
+        }
+
+        assertThat(serialize(decoder.finish())).isEqualTo(serialize(message(frame)));
+    }
+
+    @Test
+    void frameDecoderKeepsIdOfFrameThatFailsToDecode() throws IOException {
+        byte[] bytes = "{\"jsonrpc\":\"2.0\",\"id\":12,\"method\":\"m\",\"params\":[1,}"
+                .getBytes(StandardCharsets.UTF_8);
+        FrameDecoder decoder = formatter.newFrameDecoder();
+        assertThat(decoder).isNotNull();
+
+        assertThatThrownBy(() -> decoder.feed(bytes, 0, bytes.length)).isInstanceOf(IOException.class);
+        assertThat(decoder.getId()).isEqualTo(12);
+    }
+
+    @Test
+    void namedParamReaderOnlyReadsNamedParams() throws IOException {
+        ValueReader<Object> token = formatter.namedParamReader("token", Object.class);
+
+        assertThat(token.read(((JsonRpcRequest) message("{\"method\":\"m\",\"params\":{\"a\":{\"b\":[1]},\"token\":\"t\"}}")).getParams()))
+                .isEqualTo("t");
+        assertThat(token.read(((JsonRpcRequest) message("{\"method\":\"m\",\"params\":{\"a\":1}}")).getParams()))
+                .isNull();
+        assertThat(token.read(((JsonRpcRequest) message("{\"method\":\"m\",\"params\":[\"t\"]}")).getParams()))
+                .isNull();
+    }
+
+    @Test
+    void batchRoundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        formatter.serialize(new JsonRpcBatch(List.of(
+                new JsonRpcRequest(1, "a", null),
+                new JsonRpcRequest(2, "b", null))), out);
+
+        assertThat(out.toString(formatter.getEncoding()))
+                .isEqualTo("[{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"a\"}," +
+                           "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"b\"}]");
+    }
+
+    @Test
+    void emptyBatchFails() {
+        assertThatThrownBy(() -> message("[]")).hasMessageContaining("Empty batch");
+    }
+
+    private String serialize(JsonRpcMessage message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        formatter.serialize(message, out);
+        return out.toString(formatter.getEncoding());
+    }
+
     private JsonRpcMessage message(String x) throws IOException {
         return formatter.deserialize(new ByteArrayInputStream(
                 x.getBytes(formatter.getEncoding())
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.formatter;
+
+import io.moderne.jsonrpc.JsonRpcError;
+import io.moderne.jsonrpc.JsonRpcMessage;
+import io.moderne.jsonrpc.JsonRpcRequest;
+import io.moderne.jsonrpc.JsonRpcSuccess;
+import io.moderne.jsonrpc.RawJson;
+import io.moderne.jsonrpc.handler.HeaderDelimitedMessageHandler;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessagePackMessageFormatterTest {
+    MessagePackMessageFormatter formatter = new MessagePackMessageFormatter();
+
+    @Test
+    void requestRoundTrip() throws IOException {
+        JsonRpcRequest request = (JsonRpcRequest) roundTrip(
+                new JsonRpcRequest(5_000_000_000L, "visit", RawJson.of(Map.of("names", List.of("a", "b")))));
+
+        assertThat(request.getId()).isEqualTo(5_000_000_000L);
+        assertThat(request.getMethod()).isEqualTo("visit");
+        assertThat(formatter.<Map<String, List<String>>>convertValue(request.getParams(), Map.class))
+                .containsEntry("names", List.of("a", "b"));
+    }
+
+    @Test
+    void responsesRoundTrip() throws IOException {
+        JsonRpcSuccess success = (JsonRpcSuccess) roundTrip(new JsonRpcSuccess(1, RawJson.of(42)));
+        assertThat(success.getResult(Integer.class)).isEqualTo(42);
+
+        JsonRpcError error = (JsonRpcError) roundTrip(JsonRpcError.internalError(null, "boom"));
+        assertThat(error.getId()).isNull();
+        assertThat(error.getError().getMessage()).isEqualTo("Internal error: boom");
+    }
+
+    @Test
+    void smallerThanJson() throws IOException {
+        JsonRpcRequest request = new JsonRpcRequest(1, "visit", RawJson.of(Map.of(
+                "line", 123456, "column", 78, "weight", 0.5, "children", List.of(1, 2, 3, 4, 5))));
+
+        assertThat(serialize(formatter, request).length)
+                .isLessThan(serialize(new JsonMessageFormatter(), request).length);
+    }
+
+    @Test
+    void overHeaderDelimitedHandler() throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        new HeaderDelimitedMessageHandler(new ByteArrayInputStream(new byte[0]), wire)
+                .send(new JsonRpcRequest(1, "a", RawJson.of(List.of("\n", "\r\n\r\n"))), formatter);
+
+        HeaderDelimitedMessageHandler reader = new HeaderDelimitedMessageHandler(
+                new ByteArrayInputStream(wire.toByteArray()), new ByteArrayOutputStream());
+        JsonRpcRequest request = (JsonRpcRequest) reader.receive(formatter);
+        assertThat(formatter.<List<String>>convertValue(request.getParams(), List.class))
+                .containsExactly("\n", "\r\n\r\n");
+    }
+
+    private JsonRpcMessage roundTrip(JsonRpcMessage message) throws IOException {
+        return formatter.deserialize(new ByteArrayInputStream(serialize(formatter, message)));
+    }
+
+    private static byte[] serialize(MessageFormatter formatter, JsonRpcMessage message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        formatter.serialize(message, out);
+        return out.toByteArray();
+    }
+}
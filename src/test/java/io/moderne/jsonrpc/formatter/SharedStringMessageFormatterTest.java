@@ -0,0 +1,76 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.formatter;
+
+import io.moderne.jsonrpc.JsonRpcRequest;
+import io.moderne.jsonrpc.RawJson;
+import io.moderne.jsonrpc.handler.HeaderDelimitedMessageHandler;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SharedStringMessageFormatterTest {
+    private static final List<MessageFormatter> FORMATTERS = List.of(new SmileMessageFormatter(), new CborMessageFormatter());
+
+    @Test
+    void roundTripOverHeaderDelimitedHandler() throws IOException {
+        for (MessageFormatter formatter : FORMATTERS) {
+            ByteArrayOutputStream wire = new ByteArrayOutputStream();
+            new HeaderDelimitedMessageHandler(new ByteArrayInputStream(new byte[0]), wire)
+                    .send(new JsonRpcRequest(1, "visit", RawJson.of(List.of("\n", "\r\n\r\n"))), formatter);
+
+            assertThat(new String(wire.toByteArray(), StandardCharsets.ISO_8859_1))
+                    .contains("\r\nContent-Type: " + formatter.getContentType() + "\r\n\r\n");
+
+            JsonRpcRequest request = (JsonRpcRequest) new HeaderDelimitedMessageHandler(
+                    new ByteArrayInputStream(wire.toByteArray()), new ByteArrayOutputStream()).receive(formatter);
+            assertThat(request.getMethod()).isEqualTo("visit");
+            assertThat(formatter.<List<String>>convertValue(request.getParams(), List.class))
+                    .containsExactly("\n", "\r\n\r\n");
+        }
+    }
+
+    @Test
+    void repeatedNamesAndValuesAreWrittenOnce() throws IOException {
+        List<Map<String, String>> nodes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            nodes.add(Map.of("kind", "MethodInvocation", "source", "Main.java"));
+        }
+        JsonRpcRequest request = new JsonRpcRequest(1, "visit", RawJson.of(nodes));
+
+        int json = serialize(new JsonMessageFormatter(), request).length;
+        for (MessageFormatter formatter : FORMATTERS) {
+            assertThat(serialize(formatter, request).length).isLessThan(json / 2);
+            JsonRpcRequest parsed = (JsonRpcRequest) formatter.deserialize(
+                    new ByteArrayInputStream(serialize(formatter, request)));
+            assertThat(formatter.<List<?>>convertValue(parsed.getParams(), List.class)).isEqualTo(nodes);
+        }
+    }
+
+    private static byte[] serialize(MessageFormatter formatter, JsonRpcRequest request) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        formatter.serialize(request, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteSearchTest {
+
+    @Test
+    void findsFirstMatchInEveryPosition() {
+        for (int length = 0; length < 40; length++) {
+            for (int at = 0; at < length; at++) {
+                byte[] buf = new byte[length];
+                buf[at] = '\n';
+                assertThat(ByteSearch.indexOf(buf, 0, length, (byte) '\n')).isEqualTo(at);
+            }
+            assertThat(ByteSearch.indexOf(new byte[length], 0, length, (byte) '\n')).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void agreesWithLinearScan() {
+        Random random = new Random(0);
+        for (int trial = 0; trial < 10_000; trial++) {
+            byte[] buf = new byte[random.nextInt(64)];
+            random.nextBytes(buf);
+            int from = random.nextInt(buf.length + 1);
+            int to = from + random.nextInt(buf.length - from + 1);
+            // Includes bytes with the high bit set, which the zero-byte trick
+            // must not mistake for matches.
+            byte target = (byte) random.nextInt(256);
+
+            int expected = -1;
+            for (int i = from; i < to; i++) {
+                if (buf[i] == target) {
+                    expected = i;
+                    break;
+                }
+            }
+            assertThat(ByteSearch.indexOf(buf, from, to, target)).isEqualTo(expected);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.handler;
+
+import io.moderne.jsonrpc.JsonRpcReceiveException;
+import io.moderne.jsonrpc.JsonRpcRequest;
+import io.moderne.jsonrpc.formatter.JsonMessageFormatter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HeaderDelimitedChannelMessageHandlerTest {
+    private static final JsonMessageFormatter FORMATTER = new JsonMessageFormatter();
+
+    @Test
+    void receiveThrowsEofWhenStreamClosedBetweenMessages() {
+        InputStream empty = new ByteArrayInputStream(new byte[0]);
+        HeaderDelimitedChannelMessageHandler handler = new HeaderDelimitedChannelMessageHandler(empty, new ByteArrayOutputStream());
+
+        assertThatThrownBy(() -> handler.receive(FORMATTER))
+                .isInstanceOf(EOFException.class)
+                .hasMessage("Stream closed");
+    }
+
+    @Test
+    void receiveThrowsForNonEmptyMalformedHeader() {
+        InputStream noise = new ByteArrayInputStream("warning: something\n".getBytes());
+        HeaderDelimitedChannelMessageHandler handler = new HeaderDelimitedChannelMessageHandler(noise, new ByteArrayOutputStream());
+
+        assertThatThrownBy(() -> handler.receive(FORMATTER))
+                .isInstanceOf(JsonRpcReceiveException.class)
+                .hasMessageContaining("Expected Content-Length header");
+    }
+
+    @Test
+    void receiveThrowsEofWhenStreamClosesMidMessage() {
+        String partial = "Content-Length: 100\r\n\r\n{partial";
+        InputStream truncated = new ByteArrayInputStream(partial.getBytes());
+        HeaderDelimitedChannelMessageHandler handler = new HeaderDelimitedChannelMessageHandler(truncated, new ByteArrayOutputStream());
+
+        assertThatThrownBy(() -> handler.receive(FORMATTER))
+                .isInstanceOf(EOFException.class)
+                .hasMessageContaining("mid-message");
+    }
+
+    @Test
+    void receiveAcceptsVscodeHeaderVariants() throws IOException {
+        // vscode-jsonrpc treats header names case-insensitively and may send
+        // a Content-Type header after Content-Length.
+        String body = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"ping\"}";
+        String frame = "content-length: " + body.length() + "\r\n" +
+                       "Content-Type: application/vscode-jsonrpc; charset=utf-8\r\n\r\n" + body;
+        HeaderDelimitedChannelMessageHandler handler = new HeaderDelimitedChannelMessageHandler(
+                new ByteArrayInputStream(frame.getBytes(StandardCharsets.UTF_8)), new ByteArrayOutputStream());
+
+        JsonRpcRequest msg = (JsonRpcRequest) handler.receive(FORMATTER);
+
+        assertThat(msg.getMethod()).isEqualTo("ping");
+        assertThat(msg.getId()).isEqualTo(1);
+    }
+
+    @Test
+    void roundTripsFramesSplitAcrossReads() throws IOException {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            large.append("0123456789");
+        }
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        HeaderDelimitedChannelMessageHandler writer = new HeaderDelimitedChannelMessageHandler(
+                new ByteArrayInputStream(new byte[0]), wire);
+        writer.send(JsonRpcRequest.newRequest("small", Map.of("n", 1)), FORMATTER);
+        writer.send(JsonRpcRequest.newRequest("large", Map.of("s", large.toString())), FORMATTER);
+        writer.send(JsonRpcRequest.newRequest("last"), FORMATTER);
+
+        // Trickle the bytes in so frames, and headers, straddle reads.
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(wire.toByteArray())) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        HeaderDelimitedChannelMessageHandler reader = new HeaderDelimitedChannelMessageHandler(
+                trickle, new ByteArrayOutputStream());
+
+        assertThat(((JsonRpcRequest) reader.receive(FORMATTER)).getMethod()).isEqualTo("small");
+        JsonRpcRequest largeRequest = (JsonRpcRequest) reader.receive(FORMATTER);
+        assertThat(largeRequest.getParams()).isNotNull();
+        assertThat(largeRequest.getParams().as(FORMATTER, Map.class).get("s")).isEqualTo(large.toString());
+        assertThat(((JsonRpcRequest) reader.receive(FORMATTER)).getMethod()).isEqualTo("last");
+        assertThatThrownBy(() -> reader.receive(FORMATTER)).isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    void receiveExtractsIdFromMalformedBody() {
+        String body = "{\"id\":42,\"method\":\"oops\",\"params\":{";
+        String frame = "Content-Length: " + body.length() + "\r\n\r\n" + body;
+        HeaderDelimitedChannelMessageHandler handler = new HeaderDelimitedChannelMessageHandler(
+                new ByteArrayInputStream(frame.getBytes(StandardCharsets.UTF_8)), new ByteArrayOutputStream());
+
+        assertThatThrownBy(() -> handler.receive(FORMATTER))
+                .isInstanceOfSatisfying(JsonRpcReceiveException.class, e ->
+                        assertThat(e.toError().getId()).isEqualTo(42));
+    }
+
+    @Test
+    void malformedFrameLargerThanReadBufferIsSkippedWhole() throws IOException {
+        StringBuilder body = new StringBuilder("{\"id\":1,\"method\":\"oops\",\"params\":[");
+        for (int i = 0; i < 600_000; i++) {
+            body.append("1,");
+        }
+        body.append("}");
+        String next = "{\"jsonrpc\":\"2.0\",\"method\":\"next\"}";
+        String frames = "Content-Length: " + body.length() + "\r\n\r\n" + body +
+                        "Content-Length: " + next.length() + "\r\n\r\n" + next;
+        HeaderDelimitedChannelMessageHandler handler = new HeaderDelimitedChannelMessageHandler(
+                new ByteArrayInputStream(frames.getBytes(StandardCharsets.UTF_8)), new ByteArrayOutputStream());
+
+        // Decoded as it is read, so the parse failure surfaces before the end
+        // of the frame, which must still be consumed. The id was read by then.
+        assertThatThrownBy(() -> handler.receive(FORMATTER))
+                .isInstanceOfSatisfying(JsonRpcReceiveException.class, e ->
+                        assertThat(e.toError().getId()).isEqualTo(1));
+        assertThat(((JsonRpcRequest) handler.receive(FORMATTER)).getMethod()).isEqualTo("next");
+    }
+}
@@ -16,14 +16,20 @@
 package io.moderne.jsonrpc.handler;
 
 import io.moderne.jsonrpc.JsonRpcReceiveException;
+import io.moderne.jsonrpc.JsonRpcRequest;
 import io.moderne.jsonrpc.formatter.JsonMessageFormatter;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class HeaderDelimitedMessageHandlerTest {
@@ -63,4 +69,26 @@ class HeaderDelimitedMessageHandlerTest {
         assertThatThrownBy(() -> handler.receive(FORMATTER))
                 .isInstanceOf(EOFException.class);
     }
+
+    @Test
+    void sendWritesHeaderAndBodyAsOneFrame() throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        HeaderDelimitedMessageHandler writer = new HeaderDelimitedMessageHandler(new ByteArrayInputStream(new byte[0]), wire);
+        writer.send(JsonRpcRequest.newRequest("first", Map.of("n", 1)), FORMATTER);
+        writer.send(JsonRpcRequest.newRequest("second"), new JsonMessageFormatter() {
+            @Override
+            public Charset getEncoding() {
+                return StandardCharsets.ISO_8859_1;
+            }
+        });
+
+        String frames = wire.toString(StandardCharsets.US_ASCII);
+        assertThat(frames).startsWith("Content-Length: ");
+        assertThat(frames).contains("\r\nContent-Type: application/vscode-jsonrpc;charset=ISO-8859-1\r\n\r\n");
+
+        HeaderDelimitedMessageHandler reader = new HeaderDelimitedMessageHandler(
+                new ByteArrayInputStream(wire.toByteArray()), new ByteArrayOutputStream());
+        assertThat(((JsonRpcRequest) reader.receive(FORMATTER)).getMethod()).isEqualTo("first");
+        assertThat(((JsonRpcRequest) reader.receive(FORMATTER)).getMethod()).isEqualTo("second");
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.handler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonRpcRelayTest {
+    private final Peer client = new Peer();
+    private final Peer worker = new Peer();
+    private final JsonRpcRelay relay = new JsonRpcRelay(client.relaySide, method ->
+            method.startsWith("worker/") ? worker.relaySide : null).bind();
+
+    @AfterEach
+    void after() {
+        relay.shutdown();
+    }
+
+    @Test
+    void requestIdsAreRewrittenAndPayloadCopiedVerbatim() throws IOException {
+        client.write("{\"jsonrpc\":\"2.0\",\"id\":\"abc\",\"method\":\"worker/echo\",\"params\":{ \"s\" : \"\\u00e9\" }}");
+        assertThat(worker.read()).isEqualTo("{\"jsonrpc\":\"2.0\",\"id\":1    ,\"method\":\"worker/echo\",\"params\":{ \"s\" : \"\\u00e9\" }}");
+
+        worker.write("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":[ 1, 2 ]}");
+        assertThat(client.read()).isEqualTo("{\"jsonrpc\":\"2.0\",\"id\":\"abc\",\"result\":[ 1, 2 ]}");
+    }
+
+    @Test
+    void cancellationFollowsTheRewrittenId() throws IOException {
+        client.write("{\"jsonrpc\":\"2.0\",\"id\":42,\"method\":\"worker/slow\"}");
+        assertThat(worker.read()).isEqualTo("{\"jsonrpc\":\"2.0\",\"id\":1 ,\"method\":\"worker/slow\"}");
+
+        client.write("{\"jsonrpc\":\"2.0\",\"method\":\"$/cancelRequest\",\"params\":{\"id\":42}}");
+        assertThat(worker.read()).isEqualTo("{\"jsonrpc\":\"2.0\",\"method\":\"$/cancelRequest\",\"params\":{\"id\":1 }}");
+    }
+
+    @Test
+    void unroutedMethodIsAnsweredByTheRelay() throws IOException {
+        client.write("{\"jsonrpc\":\"2.0\",\"id\":7,\"method\":\"elsewhere\"}");
+        assertThat(client.read())
+                .contains("\"id\":7")
+                .contains("\"code\":-32601");
+    }
+
+    @Test
+    void responseIsRoutedWithoutScanningItsResult() throws Exception {
+        client.write("{\"jsonrpc\":\"2.0\",\"id\":9,\"method\":\"worker/list\"}");
+        assertThat(worker.read()).isEqualTo("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"worker/list\"}");
+
+        // Malformed past the field name: the relay would fail on it, were it
+        // to read any of it.
+        String result = "[" + String.join(",", Collections.nCopies(100_000, "{\"k\":1}")) + ",,]";
+        String response = "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":" + result + "}";
+        // Read while writing, as the pipes hold far less than the frame.
+        CompletableFuture<String> routed = CompletableFuture.supplyAsync(() -> {
+            try {
+                return client.read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        worker.write(response);
+
+        assertThat(routed.get(5, TimeUnit.SECONDS))
+                .isEqualTo("{\"jsonrpc\":\"2.0\",\"id\":9,\"result\":" + result + "}");
+    }
+
+    @Test
+    void unparseableRequestIsAnsweredWithParseError() throws IOException {
+        client.write("{\"jsonrpc\":\"2.0\",\"id\":7,\"params\":[1,,2],\"method\":\"worker/echo\"}");
+        assertThat(client.read())
+                .contains("\"id\":7")
+                .contains("\"code\":-32700");
+
+        // And the relay carries on with the next frame.
+        client.write("{\"jsonrpc\":\"2.0\",\"id\":8,\"method\":\"elsewhere\"}");
+        assertThat(client.read())
+                .contains("\"id\":8")
+                .contains("\"code\":-32601");
+    }
+
+    /**
+     * A peer of the relay, talking newline-delimited JSON over pipes.
+     */
+    private static class Peer {
+        final MessageHandler relaySide;
+        final OutputStream out;
+        final BufferedReader in;
+
+        Peer() {
+            try {
+                PipedOutputStream toRelay = new PipedOutputStream();
+                PipedOutputStream fromRelay = new PipedOutputStream();
+                relaySide = new NewLineDelimitedMessageHandler(new PipedInputStream(toRelay), fromRelay);
+                out = toRelay;
+                in = new BufferedReader(new InputStreamReader(new PipedInputStream(fromRelay), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void write(String frame) throws IOException {
+            out.write((frame + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        String read() throws IOException {
+            return in.readLine();
+        }
+    }
+}
@@ -23,6 +23,8 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 
@@ -94,4 +96,38 @@ class NewLineDelimitedMessageHandlerTest {
                     assertThat(e.toError().getId()).isEqualTo(42);
                 });
     }
+
+    @Test
+    void receiveLineLongerThanOneBuffer() throws Exception {
+        String name = "x".repeat(100_000);
+        InputStream in = new ByteArrayInputStream(
+                ("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"" + name + "\"}\n" +
+                 "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"ping\"}\n").getBytes(StandardCharsets.UTF_8));
+        NewLineDelimitedMessageHandler handler = new NewLineDelimitedMessageHandler(in, new ByteArrayOutputStream());
+
+        assertThat(((JsonRpcRequest) handler.receive(FORMATTER)).getMethod()).isEqualTo(name);
+        assertThat(((JsonRpcRequest) handler.receive(FORMATTER)).getMethod()).isEqualTo("ping");
+    }
+
+    @Test
+    void receiveFramesSplitAcrossShortReads() throws Exception {
+        // A peer that delivers a few bytes per read: frames straddle read
+        // boundaries and bytes read past one newline belong to the next frame.
+        StringBuilder wire = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            wire.append("{\"jsonrpc\":\"2.0\",\"id\":").append(i).append(",\"method\":\"ping\"}\n");
+        }
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(wire.toString().getBytes(StandardCharsets.UTF_8))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        NewLineDelimitedMessageHandler handler = new NewLineDelimitedMessageHandler(in, new ByteArrayOutputStream());
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(handler.receive(FORMATTER).getId()).isEqualTo(i);
+        }
+        assertThatThrownBy(() -> handler.receive(FORMATTER)).isInstanceOf(EOFException.class);
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.handler;
+
+import io.moderne.jsonrpc.JsonRpcRequest;
+import io.moderne.jsonrpc.formatter.JsonMessageFormatter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WritePipelineTest {
+    private static final JsonMessageFormatter FORMATTER = new JsonMessageFormatter();
+
+    @Test
+    void concurrentSendersProduceIntactFrames() throws Exception {
+        int threads = 8;
+        int messagesPerThread = 2_000;
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        WritePipeline pipeline = new WritePipeline(wire, 16);
+        HeaderDelimitedMessageHandler sender = new HeaderDelimitedMessageHandler(
+                new ByteArrayInputStream(new byte[0]), pipeline);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            pool.submit(() -> {
+                for (int i = 0; i < messagesPerThread; i++) {
+                    sender.send(JsonRpcRequest.newRequest("m", Map.of("t", thread, "i", i)), FORMATTER);
+                }
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        pipeline.close();
+
+        assertThat(pipeline.getQueueDepth()).isZero();
+        assertThat(pipeline.getFramesWritten()).isEqualTo(threads * messagesPerThread);
+        assertThat(pipeline.getBatchesWritten()).isBetween(1L, (long) threads * messagesPerThread);
+        assertThat(pipeline.getMaxObservedBatchSize()).isBetween(1, 16);
+
+        HeaderDelimitedMessageHandler receiver = new HeaderDelimitedMessageHandler(
+                new ByteArrayInputStream(wire.toByteArray()), new ByteArrayOutputStream());
+        Set<Object> ids = new HashSet<>();
+        try {
+            //noinspection InfiniteLoopStatement
+            while (true) {
+                ids.add(receiver.receive(FORMATTER).getId());
+            }
+        } catch (EOFException ignored) {
+        }
+        assertThat(ids).hasSize(threads * messagesPerThread);
+    }
+
+    @Test
+    void sendRacingCloseIsEitherWrittenOrRejected() throws Exception {
+        int threads = 8;
+        WritePipeline pipeline = new WritePipeline(new ByteArrayOutputStream());
+        HeaderDelimitedMessageHandler sender = new HeaderDelimitedMessageHandler(
+                new ByteArrayInputStream(new byte[0]), pipeline);
+
+        AtomicLong accepted = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                try {
+                    //noinspection InfiniteLoopStatement
+                    while (true) {
+                        sender.send(JsonRpcRequest.newRequest("m"), FORMATTER);
+                        accepted.incrementAndGet();
+                    }
+                } catch (IllegalStateException closed) {
+                    // Rejected by close(), and so never written.
+                }
+            });
+        }
+        Thread.sleep(50);
+        pipeline.close();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(pipeline.getFramesWritten()).isEqualTo(accepted.get());
+    }
+
+    @Test
+    void writeFailureSurfacesOnLaterSend() throws Exception {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        WritePipeline pipeline = new WritePipeline(broken);
+        NewLineDelimitedMessageHandler sender = new NewLineDelimitedMessageHandler(
+                new ByteArrayInputStream(new byte[0]), pipeline);
+        sender.send(JsonRpcRequest.newRequest("first"), FORMATTER);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        boolean failed = false;
+        while (!failed && System.nanoTime() < deadline) {
+            try {
+                sender.send(JsonRpcRequest.newRequest("next"), FORMATTER);
+                Thread.sleep(10);
+            } catch (UncheckedIOException e) {
+                assertThat(e).hasRootCauseMessage("Broken pipe");
+                failed = true;
+            }
+        }
+        assertThat(failed).isTrue();
+        assertThatThrownBy(pipeline::close).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BufferPoolTest {
+
+    @Test
+    void roundsUpToPowerOfTwoSizeClasses() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        assertThat(pool.acquire(0)).hasSize(4096);
+        assertThat(pool.acquire(4096)).hasSize(4096);
+        assertThat(pool.acquire(4097)).hasSize(8192);
+        assertThat(pool.acquire(100_000)).hasSize(131072);
+    }
+
+    @Test
+    void reusesReleasedBuffersOfTheSameClass() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        byte[] buffer = pool.acquire(5000);
+        pool.release(buffer);
+        assertThat(pool.getPooledBytes()).isEqualTo(8192);
+
+        assertThat(pool.acquire(6000)).isSameAs(buffer);
+        assertThat(pool.getPooledBytes()).isZero();
+        assertThat(pool.acquire(3000)).isNotSameAs(buffer);
+    }
+
+    @Test
+    void dropsBuffersOnceTheCapIsReached() {
+        BufferPool pool = new BufferPool(16 * 1024);
+        byte[] first = pool.acquire(16 * 1024);
+        byte[] second = pool.acquire(16 * 1024);
+        pool.release(first);
+        pool.release(second);
+
+        assertThat(pool.getPooledBytes()).isEqualTo(16 * 1024);
+        assertThat(pool.acquire(16 * 1024)).isSameAs(first);
+        assertThat(pool.acquire(16 * 1024)).isNotSameAs(second);
+    }
+
+    @Test
+    void ignoresBuffersItDidNotHandOut() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        pool.release(new byte[5000]);
+        pool.release(new byte[1024]);
+        assertThat(pool.getPooledBytes()).isZero();
+    }
+}
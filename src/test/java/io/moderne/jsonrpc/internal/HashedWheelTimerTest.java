@@ -0,0 +1,62 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.moderne.jsonrpc.internal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashedWheelTimerTest {
+    // A small wheel, so the delays below span several rotations.
+    HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8);
+
+    @AfterEach
+    void after() {
+        timer.stop();
+    }
+
+    @Test
+    void firesNoEarlierThanDelay() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.newTimeout(fired::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void cancelledTimeoutsNeverFire() throws Exception {
+        AtomicInteger fired = new AtomicInteger();
+        CountDownLatch last = new CountDownLatch(1);
+        for (int i = 0; i < 10_000; i++) {
+            HashedWheelTimer.Timeout timeout = timer.newTimeout(fired::incrementAndGet, 10 + i % 30, TimeUnit.MILLISECONDS);
+            if (i % 2 == 0) {
+                assertThat(timeout.cancel()).isTrue();
+            }
+        }
+        timer.newTimeout(last::countDown, 100, TimeUnit.MILLISECONDS);
+
+        assertThat(last.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired.get()).isEqualTo(5_000);
+        assertThat(timer.getScheduledCount()).isZero();
+    }
+}
@@ -23,8 +23,10 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class SnowflakeIdTest {
 
@@ -66,4 +68,54 @@ class SnowflakeIdTest {
                 .as("every generated id is unique across %d threads x %d ids", threads, idsPerThread)
                 .hasSize(threads * idsPerThread);
     }
+
+    @Test
+    void idsIncreaseWithinAThreadPastSequenceExhaustion() {
+        // Far more than the 4096 sequence numbers a millisecond holds; the
+        // generator borrows a little ahead, then waits for the clock.
+        SnowflakeId generator = new SnowflakeId(7);
+        long previous = generator.nextId();
+        for (int i = 0; i < 100_000; i++) {
+            long next = generator.nextId();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void manyThreadsDoNotRunTheTimestampAheadOfTheClock() throws Exception {
+        // Each thread reserves a block per millisecond, so 256 threads want
+        // four times the sequence numbers a millisecond holds.
+        int threads = 256;
+        SnowflakeId generator = new SnowflakeId(3);
+        AtomicLong latest = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                pool.submit(() -> {
+                    try {
+                        for (int i = 0; i < 2_000; i++) {
+                            latest.accumulateAndGet(generator.nextId(), Math::max);
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long timestamp = (latest.get() >>> 22) + 1640995200000L;
+        assertThat(timestamp).isLessThanOrEqualTo(System.currentTimeMillis() + 5);
+    }
+
+    @Test
+    void machineIdIsEncoded() {
+        long id = new SnowflakeId(1023).nextId();
+        assertThat((id >>> 12) & 1023).isEqualTo(1023);
+        assertThatThrownBy(() -> new SnowflakeId(1024)).isInstanceOf(IllegalArgumentException.class);
+    }
 }